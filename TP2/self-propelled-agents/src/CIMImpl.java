@@ -74,14 +74,14 @@ class CIMImpl {
             for (Particle p : grid[0][column]) {
                 double distanceY = p.getPosY() - 0;
                 double virtualY = L + distanceY;
-                Particle newVirtual = new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle());
+                Particle newVirtual = new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin());
                 virtualList.add(newVirtual);
             }
 
             for (Particle p : grid[M-1][column]) {
                 double virtualY = L - p.getPosY();
 
-                Particle newVirtual = new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle());
+                Particle newVirtual = new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin());
                 virtualList.add(newVirtual);
             }
         }
@@ -92,14 +92,14 @@ class CIMImpl {
                 double distanceX = p.getPosX() - 0;
                 double virtualX = L + distanceX;
 
-                Particle newVirtual = new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle());
+                Particle newVirtual = new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin());
                 virtualList.add(newVirtual);
             }
 
             for (Particle p : grid[row][M-1]) {
                 double virtualX = L - p.getPosX();
 
-                Particle newVirtual = new Particle(p.getId(), - virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle());
+                Particle newVirtual = new Particle(p.getId(), - virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin());
                 virtualList.add(newVirtual);
             }
         }
@@ -112,9 +112,9 @@ class CIMImpl {
             double distanceX = p.getPosX() - 0;
             double virtualX = L + distanceX;
 
-            virtualList.add(new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), virtualX, virtualY, p.getRadius(),p.getVel(),p.getAngle()));
+            virtualList.add(new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), virtualX, virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
         }
 
         for (Particle p : grid[0][M-1]) {
@@ -124,9 +124,9 @@ class CIMImpl {
             double virtualX = - distanceX;
 
             // Tener en cuenta las tres esquinas.
-            virtualList.add(new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), virtualX, virtualY, p.getRadius(),p.getVel(),p.getAngle()));
+            virtualList.add(new Particle(p.getId(), p.getPosX(), virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), virtualX, virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
         }
 
         for (Particle p : grid[M-1][0]) {
@@ -135,9 +135,9 @@ class CIMImpl {
             double distanceX = p.getPosX() - 0;
             double virtualX = L + distanceX;
 
-            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle())); // Esquina derecha.
-            virtualList.add(new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), virtualX, - virtualY, p.getRadius(),p.getVel(),p.getAngle())); // Borde inferior derecho
+            virtualList.add(new Particle(p.getId(), virtualX, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin())); // Esquina derecha.
+            virtualList.add(new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), virtualX, - virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin())); // Borde inferior derecho
         }
 
         // chequeadisimo. OK. :)
@@ -147,9 +147,9 @@ class CIMImpl {
             double distanceX = L - p.getPosX();
             double virtualX = distanceX;
 
-            virtualList.add(new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), - virtualY, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle()));
-            virtualList.add(new Particle(p.getId(), - virtualX, - virtualY, p.getRadius(),p.getVel(),p.getAngle()));
+            virtualList.add(new Particle(p.getId(), p.getPosX(), - virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), - virtualY, p.getPosY(), p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
+            virtualList.add(new Particle(p.getId(), - virtualX, - virtualY, p.getRadius(),p.getVel(),p.getAngle(),p.getCos(),p.getSin()));
         }
 
     }
@@ -201,9 +201,12 @@ class CIMImpl {
                 for (Particle p1 : this.grid[cellY][cellX]){
                     for (Particle p2 : neighbors) {
                         if (p1 != p2) {
-                            Particle interactionParticle = new Particle(-1, p1.getPosX(), p1.getPosY(), rc,0,0);
+                            // p2 toca el círculo de radio rc alrededor de p1 (distancia al cuadrado, sin sqrt ni objetos)
+                            double dx = p2.getPosX() - p1.getPosX();
+                            double dy = p2.getPosY() - p1.getPosY();
+                            double reach = rc + p2.getRadius();
 
-                            if (p2.isPartiallyInside(interactionParticle)) {
+                            if (dx * dx + dy * dy <= reach * reach) {
                                 interactions.putIfAbsent(p1.getId(), new ArrayList<>());
                                 interactions.get(p1.getId()).add(p2);
 
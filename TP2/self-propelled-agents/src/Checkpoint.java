@@ -0,0 +1,91 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/*
+    Utilidades comunes para los checkpoints de OffLattice y LargeOffLattice.
+    Cada clase tiene su propia versión de formato (se guarda junto con el tipo), así cambiar el formato de una no
+    invalida los checkpoints de la otra.
+    Los doubles se escriben con DataOutputStream (bits exactos), así un run reanudado da los mismos resultados
+    que uno que nunca se cortó. El archivo se escribe en <path>.tmp y después se mueve de forma atómica,
+    entonces si el proceso muere a mitad de un checkpoint queda el anterior intacto.
+ */
+public final class Checkpoint {
+
+    public static final int MAGIC = 0x564B4350; // "VKCP"
+
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface Reader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    private Checkpoint() {
+    }
+
+    public static void write(Path path, String kind, int version, Writer writer) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(version);
+            out.writeUTF(kind);
+            writer.write(out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static <T> T read(Path path, String kind, int version, Reader<T> reader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("No es un checkpoint: " + path);
+            }
+            int fileVersion = in.readInt();
+            String fileKind = in.readUTF();
+            if (!fileKind.equals(kind)) {
+                throw new IOException("El checkpoint es de " + fileKind + ", no de " + kind);
+            }
+            if (fileVersion != version) {
+                throw new IOException("Versión de checkpoint de " + kind + " no soportada: " + fileVersion + ", se esperaba " + version);
+            }
+            return reader.read(in);
+        }
+    }
+
+    /*
+        java.util.Random no expone su estado, pero es Serializable: guardamos su forma serializada.
+     */
+    public static void writeRandom(DataOutputStream out, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeObject(random);
+        }
+        out.writeInt(bytes.size());
+        out.write(bytes.toByteArray());
+    }
+
+    public static Random readRandom(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Random) objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Estado de Random inválido", e);
+        }
+    }
+
+    public static void check(String name, long expected, long actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException("El checkpoint no corresponde a este sistema: " + name + " = " + actual + ", se esperaba " + expected);
+        }
+    }
+
+    public static void check(String name, double expected, double actual) throws IOException {
+        if (Double.compare(expected, actual) != 0) {
+            throw new IOException("El checkpoint no corresponde a este sistema: " + name + " = " + actual + ", se esperaba " + expected);
+        }
+    }
+}
@@ -0,0 +1,425 @@
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+    Observables espaciales que se calculan durante la simulación (cada every pasos) sobre LargeOffLattice,
+    reutilizando su cell list, para no tener que guardar la trayectoria y procesarla después en python.
+
+    - Distribución de tamaños de cluster: union-find sobre el grafo de interacción (pares a distancia <= clusterRadius).
+    - Correlación espacial de velocidades conexa C(r) = <(u_i - ū)·(u_j - ū)> por bins de r, para r <= correlationRadius.
+      Con la cell list solo se llega hasta el tamaño de celda, es la parte de corto alcance (exacta, par a par).
+    - C(r) de largo alcance (withLongRangeCorrelation): se proyectan las velocidades y la cantidad de agentes sobre una
+      grilla periódica de G x G y se autocorrelacionan con FFT, O(G^2 log G) por muestra en lugar de O(N^2).
+      La distancia de un par es la de los centros de sus celdas, así que la resolución en r es L / G; llega hasta L / 2.
+    - Histograma de densidad local: cantidad de agentes por celda de la grilla.
+    Todo se acumula sobre todas las muestras a partir del paso start (withWarmup, para no mezclar el transitorio);
+    save escribe los promedios. writeState/readState guardan los acumuladores dentro del checkpoint de
+    LargeOffLattice, así un run reanudado promedia las mismas muestras que uno sin cortes.
+ */
+public class FlockObservables {
+
+    private final int every;
+    private final double clusterRadius;
+    private final double correlationRadius;
+    private final int correlationBins;
+    private int start = 0;
+    private int gridSize = 0;
+
+    private long samples = 0;
+    private long[] clusterSizeCounts = new long[0];
+    private final double[] correlationSum;
+    private final long[] correlationPairs;
+    private long[] densityCounts = new long[0];
+    private double cellArea;
+    private double gridCell;
+    private double[] longCorrelationSum = new double[0];
+    private double[] longCorrelationPairs = new double[0];
+
+    private int[] parent = new int[0];
+    private int[] size = new int[0];
+
+    public FlockObservables(int every, double clusterRadius, double correlationRadius, int correlationBins) {
+        this.every = every;
+        this.clusterRadius = clusterRadius;
+        this.correlationRadius = correlationRadius;
+        this.correlationBins = correlationBins;
+        this.correlationSum = new double[correlationBins];
+        this.correlationPairs = new long[correlationBins];
+    }
+
+    /*
+        Las muestras empiezan en el paso start (por defecto 0).
+     */
+    public FlockObservables withWarmup(int start) {
+        this.start = start;
+        return this;
+    }
+
+    /*
+        Activa la C(r) de largo alcance sobre una grilla de gridSize x gridSize (potencia de 2, 0: desactivada).
+     */
+    public FlockObservables withLongRangeCorrelation(int gridSize) {
+        if (gridSize < 0 || Integer.bitCount(gridSize) > 1) {
+            throw new IllegalArgumentException("gridSize tiene que ser una potencia de 2: " + gridSize);
+        }
+        this.gridSize = gridSize;
+        this.longCorrelationSum = new double[gridSize / 2 + 1];
+        this.longCorrelationPairs = new double[gridSize / 2 + 1];
+        return this;
+    }
+
+    public boolean shouldSample(int step) {
+        return step >= start && step % every == 0;
+    }
+
+    public void sample(LargeOffLattice system) {
+        int N = system.getN();
+        samples++;
+        sampleClusters(system, N);
+        sampleCorrelation(system, N);
+        if (gridSize > 0) {
+            sampleLongRangeCorrelation(system, N);
+        }
+        sampleDensity(system);
+    }
+
+    private void sampleClusters(LargeOffLattice system, int N) {
+        if (parent.length != N) {
+            parent = new int[N];
+            size = new int[N];
+        }
+        if (clusterSizeCounts.length != N + 1) {
+            clusterSizeCounts = new long[N + 1];
+        }
+        for (int i = 0; i < N; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+        system.forEachPair(clusterRadius, (i, j, dx, dy, d2) -> union(i, j));
+        for (int i = 0; i < N; i++) {
+            if (find(i) == i) {
+                clusterSizeCounts[size[i]]++;
+            }
+        }
+    }
+
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int i, int j) {
+        int a = find(i);
+        int b = find(j);
+        if (a == b) {
+            return;
+        }
+        if (size[a] < size[b]) {
+            int tmp = a; a = b; b = tmp;
+        }
+        parent[b] = a;
+        size[a] += size[b];
+    }
+
+    private void sampleCorrelation(LargeOffLattice system, int N) {
+        double meanCos = 0;
+        double meanSin = 0;
+        for (int i = 0; i < N; i++) {
+            meanCos += system.getCos(i);
+            meanSin += system.getSin(i);
+        }
+        double mc = meanCos / N;
+        double ms = meanSin / N;
+        double binWidth = correlationRadius / correlationBins;
+
+        system.forEachPair(correlationRadius, (i, j, dx, dy, d2) -> {
+            int bin = Math.min((int) (Math.sqrt(d2) / binWidth), correlationBins - 1);
+            correlationSum[bin] += (system.getCos(i) - mc) * (system.getCos(j) - mc) + (system.getSin(i) - ms) * (system.getSin(j) - ms);
+            correlationPairs[bin]++;
+        });
+    }
+
+    /*
+        w(c) = suma de (u_i - ū) como número complejo (cos + i sin) en la celda c, n(c) = agentes en la celda c.
+        Re[conj(w(c)) w(c + d)] sumado en c da la suma de (u_i - ū)·(u_j - ū) sobre los pares separados por d, y lo mismo
+        con n da la cantidad de pares: ambas son autocorrelaciones periódicas, |FFT|^2 y FFT inversa. En d = 0 se
+        descuentan los pares (i, i). Los pares se cuentan en los dos sentidos, igual en la suma y en la cantidad.
+     */
+    private void sampleLongRangeCorrelation(LargeOffLattice system, int N) {
+        int G = gridSize;
+        double L = system.getL();
+        gridCell = L / G;
+        double meanCos = 0;
+        double meanSin = 0;
+        for (int i = 0; i < N; i++) {
+            meanCos += system.getCos(i);
+            meanSin += system.getSin(i);
+        }
+        double mc = meanCos / N;
+        double ms = meanSin / N;
+
+        double[] wRe = new double[G * G];
+        double[] wIm = new double[G * G];
+        double[] nRe = new double[G * G];
+        double[] nIm = new double[G * G];
+        double self = 0;
+        for (int i = 0; i < N; i++) {
+            int gx = Math.min((int) (system.getX(i) / gridCell), G - 1);
+            int gy = Math.min((int) (system.getY(i) / gridCell), G - 1);
+            int c = gy * G + gx;
+            double ux = system.getCos(i) - mc;
+            double uy = system.getSin(i) - ms;
+            wRe[c] += ux;
+            wIm[c] += uy;
+            nRe[c]++;
+            self += ux * ux + uy * uy;
+        }
+        autocorrelate(wRe, wIm, G);
+        autocorrelate(nRe, nIm, G);
+        wRe[0] -= self;
+        nRe[0] -= N;
+
+        for (int dy = 0; dy < G; dy++) {
+            int my = Math.min(dy, G - dy);
+            for (int dx = 0; dx < G; dx++) {
+                int mx = Math.min(dx, G - dx);
+                int bin = (int) Math.round(Math.sqrt(mx * mx + my * my));
+                if (bin < longCorrelationSum.length) {
+                    longCorrelationSum[bin] += wRe[dy * G + dx];
+                    longCorrelationPairs[bin] += nRe[dy * G + dx];
+                }
+            }
+        }
+    }
+
+    /*
+        Reemplaza (re, im) por su autocorrelación periódica (solo la parte real es significativa).
+     */
+    private static void autocorrelate(double[] re, double[] im, int G) {
+        fft2(re, im, G, false);
+        for (int c = 0; c < G * G; c++) {
+            re[c] = re[c] * re[c] + im[c] * im[c];
+            im[c] = 0;
+        }
+        fft2(re, im, G, true);
+        for (int c = 0; c < G * G; c++) {
+            re[c] /= (double) G * G;
+        }
+    }
+
+    private static void fft2(double[] re, double[] im, int G, boolean inverse) {
+        double[] rowRe = new double[G];
+        double[] rowIm = new double[G];
+        for (int y = 0; y < G; y++) {
+            System.arraycopy(re, y * G, rowRe, 0, G);
+            System.arraycopy(im, y * G, rowIm, 0, G);
+            fft(rowRe, rowIm, inverse);
+            System.arraycopy(rowRe, 0, re, y * G, G);
+            System.arraycopy(rowIm, 0, im, y * G, G);
+        }
+        for (int x = 0; x < G; x++) {
+            for (int y = 0; y < G; y++) {
+                rowRe[y] = re[y * G + x];
+                rowIm[y] = im[y * G + x];
+            }
+            fft(rowRe, rowIm, inverse);
+            for (int y = 0; y < G; y++) {
+                re[y * G + x] = rowRe[y];
+                im[y * G + x] = rowIm[y];
+            }
+        }
+    }
+
+    /*
+        FFT radix 2 iterativa, in place, sin normalizar.
+     */
+    private static void fft(double[] re, double[] im, boolean inverse) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+        for (int len = 2; len <= n; len <<= 1) {
+            double angle = 2 * Math.PI / len * (inverse ? 1 : -1);
+            double wRe = Math.cos(angle);
+            double wIm = Math.sin(angle);
+            for (int i = 0; i < n; i += len) {
+                double curRe = 1;
+                double curIm = 0;
+                for (int k = 0; k < len / 2; k++) {
+                    int a = i + k;
+                    int b = a + len / 2;
+                    double tRe = re[b] * curRe - im[b] * curIm;
+                    double tIm = re[b] * curIm + im[b] * curRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                    double next = curRe * wRe - curIm * wIm;
+                    curIm = curRe * wIm + curIm * wRe;
+                    curRe = next;
+                }
+            }
+        }
+    }
+
+    private void sampleDensity(LargeOffLattice system) {
+        int[] counts = system.cellCounts();
+        int max = Arrays.stream(counts).max().orElse(0);
+        if (densityCounts.length <= max) {
+            densityCounts = Arrays.copyOf(densityCounts, max + 1);
+        }
+        for (int count : counts) {
+            densityCounts[count]++;
+        }
+        cellArea = system.getCellSize() * system.getCellSize();
+    }
+
+    public int getEvery() {
+        return every;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /*
+        Cantidad promedio (por muestra) de clusters de cada tamaño.
+     */
+    public double[] getClusterSizeDistribution() {
+        double[] distribution = new double[clusterSizeCounts.length];
+        for (int s = 0; s < clusterSizeCounts.length; s++) {
+            distribution[s] = samples == 0 ? 0 : (double) clusterSizeCounts[s] / samples;
+        }
+        return distribution;
+    }
+
+    public double[] getVelocityCorrelation() {
+        double[] correlation = new double[correlationBins];
+        for (int b = 0; b < correlationBins; b++) {
+            correlation[b] = correlationPairs[b] == 0 ? Double.NaN : correlationSum[b] / correlationPairs[b];
+        }
+        return correlation;
+    }
+
+    public double[] getLongRangeVelocityCorrelation() {
+        double[] correlation = new double[longCorrelationSum.length];
+        for (int b = 0; b < correlation.length; b++) {
+            // Menos de medio par: el bin no tiene pares (lo que queda es error de redondeo de la FFT)
+            correlation[b] = longCorrelationPairs[b] < 0.5 ? Double.NaN : longCorrelationSum[b] / longCorrelationPairs[b];
+        }
+        return correlation;
+    }
+
+    /*
+        Configuración y acumuladores, para el checkpoint de LargeOffLattice.
+     */
+    public void writeState(DataOutputStream out) throws IOException {
+        out.writeInt(every);
+        out.writeInt(start);
+        out.writeDouble(clusterRadius);
+        out.writeDouble(correlationRadius);
+        out.writeInt(correlationBins);
+        out.writeInt(gridSize);
+        out.writeLong(samples);
+        out.writeInt(clusterSizeCounts.length);
+        for (long count : clusterSizeCounts) {
+            out.writeLong(count);
+        }
+        for (int b = 0; b < correlationBins; b++) {
+            out.writeDouble(correlationSum[b]);
+            out.writeLong(correlationPairs[b]);
+        }
+        for (int b = 0; b < longCorrelationSum.length; b++) {
+            out.writeDouble(longCorrelationSum[b]);
+            out.writeDouble(longCorrelationPairs[b]);
+        }
+        out.writeInt(densityCounts.length);
+        for (long count : densityCounts) {
+            out.writeLong(count);
+        }
+        out.writeDouble(cellArea);
+        out.writeDouble(gridCell);
+    }
+
+    public void readState(DataInputStream in) throws IOException {
+        Checkpoint.check("observables every", every, in.readInt());
+        Checkpoint.check("observables start", start, in.readInt());
+        Checkpoint.check("cluster radius", clusterRadius, in.readDouble());
+        Checkpoint.check("correlation radius", correlationRadius, in.readDouble());
+        Checkpoint.check("correlation bins", correlationBins, in.readInt());
+        Checkpoint.check("grid size", gridSize, in.readInt());
+        samples = in.readLong();
+        clusterSizeCounts = new long[in.readInt()];
+        for (int s = 0; s < clusterSizeCounts.length; s++) {
+            clusterSizeCounts[s] = in.readLong();
+        }
+        for (int b = 0; b < correlationBins; b++) {
+            correlationSum[b] = in.readDouble();
+            correlationPairs[b] = in.readLong();
+        }
+        for (int b = 0; b < longCorrelationSum.length; b++) {
+            longCorrelationSum[b] = in.readDouble();
+            longCorrelationPairs[b] = in.readDouble();
+        }
+        densityCounts = new long[in.readInt()];
+        for (int count = 0; count < densityCounts.length; count++) {
+            densityCounts[count] = in.readLong();
+        }
+        cellArea = in.readDouble();
+        gridCell = in.readDouble();
+    }
+
+    public void save(Path directoryPath) throws IOException {
+        Files.createDirectories(directoryPath);
+
+        double[] clusters = getClusterSizeDistribution();
+        try (BufferedWriter writer = Files.newBufferedWriter(directoryPath.resolve("cluster_sizes"))) {
+            for (int s = 1; s < clusters.length; s++) {
+                if (clusters[s] > 0) {
+                    writer.write(s + "\t" + clusters[s] + "\n");
+                }
+            }
+        }
+
+        double[] correlation = getVelocityCorrelation();
+        double binWidth = correlationRadius / correlationBins;
+        try (BufferedWriter writer = Files.newBufferedWriter(directoryPath.resolve("velocity_correlation"))) {
+            for (int b = 0; b < correlationBins; b++) {
+                writer.write(String.format(Locale.US, "%.6f\t%s\t%d\n", (b + 0.5) * binWidth, correlation[b], correlationPairs[b]));
+            }
+        }
+
+        if (gridSize > 0) {
+            double[] longRange = getLongRangeVelocityCorrelation();
+            try (BufferedWriter writer = Files.newBufferedWriter(directoryPath.resolve("velocity_correlation_long"))) {
+                for (int b = 0; b < longRange.length; b++) {
+                    writer.write(String.format(Locale.US, "%.6f\t%s\t%.0f\n", b * gridCell, longRange[b], longCorrelationPairs[b] / 2));
+                }
+            }
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(directoryPath.resolve("density_histogram"))) {
+            long total = Arrays.stream(densityCounts).sum();
+            for (int count = 0; count < densityCounts.length; count++) {
+                writer.write(String.format(Locale.US, "%.6f\t%.6f\n", count / cellArea, total == 0 ? 0 : (double) densityCounts[count] / total));
+            }
+        }
+    }
+}
@@ -0,0 +1,538 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/*
+    Variante de OffLattice para N grande (10^6 - 10^7 agentes).
+    El estado de los agentes vive fuera del heap en buffers directos (una columna por variable: x, y, cos, sin, angle),
+    y los vecinos se buscan con una cell list de enteros en lugar de CIMImpl, sin Particle, sin partículas virtuales
+    y sin HashMap. Así el GC no tiene que recorrer N objetos por paso.
+
+    - En cada paso las columnas se reordenan por celda (counting sort), así los agentes de una celda quedan contiguos
+      en memoria y recorrer las 9 celdas vecinas es leer 3 tramos casi secuenciales. El índice i de un agente cambia
+      entre pasos; su identidad es getId(i).
+    - Los bordes periódicos se resuelven con imagen mínima, por eso hace falta M >= 3.
+    - Cada agente suma sus propios vecinos (9 celdas) y escribe solo su propia posición en los buffers "next",
+      entonces el paso se puede paralelizar por agente.
+    - El ruido sale de un hash de (seed, paso, id): el resultado no depende de cuántos threads se usen.
+    - Soporta varias especies (ver Species): cada agente tiene su especie en una columna más, y las reglas de cada
+      especie (velocidad, rc, cono de visión, ruido, especies que ignora) se pasan a tablas primitivas indexadas
+      por especie. El tamaño de celda sale del mayor rc.
+ */
+public class LargeOffLattice {
+
+    private static final double VELOCITY = 0.03;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    // Formato del checkpoint: 1 sin especies, 2 con especies, 3 además con cono de visión y especies ignoradas,
+    // 4 además con los acumuladores de FlockObservables
+    private static final int CHECKPOINT_VERSION = 4;
+
+    private final int N;
+    private final double L;
+    private final int M;
+    private final double cellSize;
+    private final long seed;
+
+    // Reglas por especie, indexadas por el valor de la columna kind.
+    private final List<Species> species;
+    private final double[] speedOf;
+    private final double[] rc2Of;
+    private final double[] noiseOf;
+    private final boolean[] coneOf;
+    private final double[] cosConeOf;
+    private final long[] alignMaskOf;
+    private final boolean[] filteredOf;
+    private boolean parallel = true;
+
+    // Estado actual y siguiente, se intercambian al reordenar y al final de cada paso.
+    private DoubleBuffer x, y, cos, sin, angle;
+    private DoubleBuffer nextX, nextY, nextCos, nextSin, nextAngle;
+    private IntBuffer id, nextId;
+    private ByteBuffer kind, nextKind;
+
+    // Cell list: después de sortByCell los agentes de la celda c son los índices [cellStart[c], cellStart[c+1]).
+    private final int[] cellStart;
+    private final int[] cellCursor;
+    private final int[] cellOf;
+
+    private int step = 0;
+    private final Map<Integer, Double> orderPerTime = new HashMap<>();
+    private FlockObservables observables;
+
+    /*
+        Visitante de pares para los observables (no se usa en el paso, ahí las reglas van inline).
+     */
+    public interface PairVisitor {
+        void visit(int i, int j, double dx, double dy, double d2);
+    }
+
+    public LargeOffLattice(int n, double l, double rc, double noiseAmplitude, long seed) throws Exception {
+        this(l, List.of(new Species("default", VELOCITY, rc, noiseAmplitude)), new int[] { n }, seed);
+    }
+
+    /*
+        counts[s] agentes de la especie species.get(s); los ids se asignan en ese orden.
+     */
+    public LargeOffLattice(double l, List<Species> species, int[] counts, long seed) throws Exception {
+        if (species.isEmpty() || species.size() > Species.MAX_SPECIES || species.size() != counts.length) {
+            throw new Exception("Se necesitan entre 1 y " + Species.MAX_SPECIES + " especies, con una cantidad para cada una.");
+        }
+        this.N = Arrays.stream(counts).sum();
+        this.L = l;
+        this.seed = seed;
+        this.species = List.copyOf(species);
+
+        int S = species.size();
+        this.speedOf = new double[S];
+        this.rc2Of = new double[S];
+        this.noiseOf = new double[S];
+        this.coneOf = new boolean[S];
+        this.cosConeOf = new double[S];
+        this.alignMaskOf = new long[S];
+        this.filteredOf = new boolean[S];
+        long allSpecies = S == Species.MAX_SPECIES ? -1L : (1L << S) - 1;
+        double maxRc = 0;
+        for (int s = 0; s < S; s++) {
+            Species sp = species.get(s);
+            speedOf[s] = sp.getSpeed();
+            rc2Of[s] = sp.getRc() * sp.getRc();
+            noiseOf[s] = sp.getNoiseAmplitude();
+            coneOf[s] = sp.hasVisionCone();
+            cosConeOf[s] = Math.cos(sp.getVisionAngle());
+            for (int o = 0; o < S; o++) {
+                if (!sp.ignores(species.get(o))) {
+                    alignMaskOf[s] |= 1L << o;
+                }
+            }
+            // Si se alinea con todas las especies no hace falta mirar la especie del vecino.
+            filteredOf[s] = alignMaskOf[s] != allSpecies;
+            maxRc = Math.max(maxRc, sp.getRc());
+        }
+
+        this.M = (int) Math.floor(l / maxRc);
+        if (M < 3) {
+            throw new Exception("L/rc debe ser mayor o igual a 3 para usar imagen mínima.");
+        }
+        this.cellSize = l / M;
+
+        this.x = allocate(N);
+        this.y = allocate(N);
+        this.cos = allocate(N);
+        this.sin = allocate(N);
+        this.angle = allocate(N);
+        this.nextX = allocate(N);
+        this.nextY = allocate(N);
+        this.nextCos = allocate(N);
+        this.nextSin = allocate(N);
+        this.nextAngle = allocate(N);
+        this.id = ByteBuffer.allocateDirect(N * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        this.nextId = ByteBuffer.allocateDirect(N * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        this.kind = ByteBuffer.allocateDirect(N);
+        this.nextKind = ByteBuffer.allocateDirect(N);
+
+        this.cellStart = new int[M * M + 1];
+        this.cellCursor = new int[M * M];
+        this.cellOf = new int[N];
+
+        generateRandomParticles(counts);
+    }
+
+    private static DoubleBuffer allocate(int n) {
+        return ByteBuffer.allocateDirect(n * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    private void generateRandomParticles(int[] counts) {
+        int s = 0;
+        int speciesEnd = counts[0];
+        for (int i = 0; i < N; i++) {
+            while (i >= speciesEnd) {
+                speciesEnd += counts[++s];
+            }
+            id.put(i, i);
+            kind.put(i, (byte) s);
+            x.put(i, uniform(i, 0) * L);
+            y.put(i, uniform(i, 1) * L);
+            double a = uniform(i, 2) * TWO_PI;
+            angle.put(i, a);
+            cos.put(i, Math.cos(a));
+            sin.put(i, Math.sin(a));
+        }
+    }
+
+    private void sortByCell() {
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < N; i++) {
+            int cell = cellIndex(x.get(i), y.get(i));
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < M * M; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        System.arraycopy(cellStart, 0, cellCursor, 0, M * M);
+
+        for (int i = 0; i < N; i++) {
+            int to = cellCursor[cellOf[i]]++;
+            nextX.put(to, x.get(i));
+            nextY.put(to, y.get(i));
+            nextCos.put(to, cos.get(i));
+            nextSin.put(to, sin.get(i));
+            nextAngle.put(to, angle.get(i));
+            nextId.put(to, id.get(i));
+            nextKind.put(to, kind.get(i));
+        }
+        swap();
+
+        for (int c = 0; c < M * M; c++) {
+            Arrays.fill(cellOf, cellStart[c], cellStart[c + 1], c);
+        }
+    }
+
+    private void swap() {
+        DoubleBuffer tmp;
+        tmp = x; x = nextX; nextX = tmp;
+        tmp = y; y = nextY; nextY = tmp;
+        tmp = cos; cos = nextCos; nextCos = tmp;
+        tmp = sin; sin = nextSin; nextSin = tmp;
+        tmp = angle; angle = nextAngle; nextAngle = tmp;
+        IntBuffer tmpId = id; id = nextId; nextId = tmpId;
+        ByteBuffer tmpKind = kind; kind = nextKind; nextKind = tmpKind;
+    }
+
+    private int cellIndex(double px, double py) {
+        int cx = Math.min((int) (px / cellSize), M - 1);
+        int cy = Math.min((int) (py / cellSize), M - 1);
+        return cy * M + cx;
+    }
+
+    /*
+        Avanza un paso. Devuelve el Va del estado resultante.
+     */
+    public double step() {
+        sortByCell();
+        step++;
+        IntStream agents = IntStream.range(0, N);
+        if (parallel) {
+            agents = agents.parallel();
+        }
+        agents.forEach(this::updateAgent);
+        swap();
+
+        return calculateOrderParameter();
+    }
+
+    private void updateAgent(int i) {
+        double px = x.get(i);
+        double py = y.get(i);
+        double hc = cos.get(i);
+        double hs = sin.get(i);
+        int si = kind.get(i);
+        double rc2 = rc2Of[si];
+        long alignMask = alignMaskOf[si];
+        boolean filtered = filteredOf[si];
+        boolean cone = coneOf[si];
+        double cosCone = cosConeOf[si];
+        double sinSum = 0;
+        double cosSum = 0;
+
+        int cell = cellOf[i];
+        int cx = cell % M;
+        int cy = cell / M;
+        for (int dy = -1; dy <= 1; dy++) {
+            int ny = cy + dy;
+            // Imagen mínima resuelta por celda: si la celda vecina está del otro lado del borde la corremos L.
+            double shiftY = ny < 0 ? -L : (ny >= M ? L : 0);
+            ny = (ny + M) % M;
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = cx + dx;
+                double shiftX = nx < 0 ? -L : (nx >= M ? L : 0);
+                int nc = ny * M + (nx + M) % M;
+                for (int j = cellStart[nc]; j < cellStart[nc + 1]; j++) {
+                    if (filtered && (alignMask >>> kind.get(j) & 1L) == 0) {
+                        continue;
+                    }
+                    double ddx = x.get(j) + shiftX - px;
+                    double ddy = y.get(j) + shiftY - py;
+                    double d2 = ddx * ddx + ddy * ddy;
+                    // Incluye a la propia partícula (distancia 0, siempre dentro del cono), igual que OffLattice.
+                    if (d2 <= rc2 && (!cone || hc * ddx + hs * ddy >= cosCone * Math.sqrt(d2))) {
+                        cosSum += cos.get(j);
+                        sinSum += sin.get(j);
+                    }
+                }
+            }
+        }
+
+        int agent = id.get(i);
+        double noise = (uniform(agent, step + 2L) - 0.5) * noiseOf[si];
+        double newAngle = ((Math.atan2(sinSum, cosSum) + noise) + TWO_PI) % TWO_PI;
+        double c = Math.cos(newAngle);
+        double s = Math.sin(newAngle);
+        double speed = speedOf[si];
+
+        nextId.put(i, agent);
+        nextKind.put(i, (byte) si);
+        nextAngle.put(i, newAngle);
+        nextCos.put(i, c);
+        nextSin.put(i, s);
+        nextX.put(i, wrap(px + speed * c));
+        nextY.put(i, wrap(py + speed * s));
+    }
+
+    private double wrap(double value) {
+        if (value >= L) return value - L;
+        if (value < 0) return value + L;
+        return value;
+    }
+
+    /*
+        Número uniforme en [0, 1) a partir de (seed, id, stream) con el mezclador de SplitMix64.
+     */
+    private double uniform(int id, long stream) {
+        long z = seed + 0x9E3779B97F4A7C15L * (stream * 0x100000001L + id + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    public double calculateOrderParameter() {
+        double cosSum = 0;
+        double sinSum = 0;
+        for (int i = 0; i < N; i++) {
+            cosSum += cos.get(i);
+            sinSum += sin.get(i);
+        }
+        return Math.sqrt(cosSum * cosSum + sinSum * sinSum) / N;
+    }
+
+    /*
+        Corre maxTime - 1 pasos (como OffLattice.run) y devuelve Va por paso, sin guardar la trayectoria.
+     */
+    public Map<Integer, Double> run(int maxTime) throws IOException {
+        return run(maxTime, null, 0);
+    }
+
+    /*
+        Igual que run(maxTime), pero guardando un checkpoint cada checkpointEvery pasos. Si checkpointPath ya existe
+        se reanuda desde ahí: como el ruido depende solo de (seed, paso, id), alcanza con las columnas y el paso
+        para que el resultado sea idéntico al de un run sin cortes.
+     */
+    public Map<Integer, Double> run(int maxTime, Path checkpointPath, int checkpointEvery) throws IOException {
+        if (checkpointPath != null && Files.exists(checkpointPath)) {
+            restoreCheckpoint(checkpointPath);
+        }
+        orderPerTime.putIfAbsent(step, calculateOrderParameter());
+        while (step < maxTime - 1) {
+            double va = step();
+            orderPerTime.put(step, va);
+            if (observables != null && observables.shouldSample(step)) {
+                observables.sample(this);
+            }
+            if (checkpointPath != null && checkpointEvery > 0 && step % checkpointEvery == 0) {
+                saveCheckpoint(checkpointPath);
+            }
+        }
+        return orderPerTime;
+    }
+
+    public void saveCheckpoint(Path path) throws IOException {
+        Checkpoint.write(path, "LargeOffLattice", CHECKPOINT_VERSION, out -> {
+            out.writeInt(N);
+            out.writeDouble(L);
+            out.writeInt(species.size());
+            for (int s = 0; s < species.size(); s++) {
+                Species sp = species.get(s);
+                out.writeDouble(sp.getSpeed());
+                out.writeDouble(sp.getRc());
+                out.writeDouble(sp.getVisionAngle());
+                out.writeDouble(sp.getNoiseAmplitude());
+                out.writeLong(alignMaskOf[s]);
+            }
+            out.writeLong(seed);
+            out.writeInt(step);
+            for (int i = 0; i < N; i++) {
+                out.writeInt(id.get(i));
+                out.writeByte(kind.get(i));
+            }
+            writeColumn(out, x);
+            writeColumn(out, y);
+            writeColumn(out, cos);
+            writeColumn(out, sin);
+            writeColumn(out, angle);
+            for (int t = 0; t <= step; t++) {
+                out.writeDouble(orderPerTime.get(t));
+            }
+            out.writeBoolean(observables != null);
+            if (observables != null) {
+                observables.writeState(out);
+            }
+        });
+    }
+
+    public void restoreCheckpoint(Path path) throws IOException {
+        Checkpoint.read(path, "LargeOffLattice", CHECKPOINT_VERSION, in -> {
+            Checkpoint.check("N", N, in.readInt());
+            Checkpoint.check("L", L, in.readDouble());
+            Checkpoint.check("species", species.size(), in.readInt());
+            for (int s = 0; s < species.size(); s++) {
+                Species sp = species.get(s);
+                Checkpoint.check("speed", sp.getSpeed(), in.readDouble());
+                Checkpoint.check("rc", sp.getRc(), in.readDouble());
+                Checkpoint.check("vision", sp.getVisionAngle(), in.readDouble());
+                Checkpoint.check("noise", sp.getNoiseAmplitude(), in.readDouble());
+                Checkpoint.check("align mask", alignMaskOf[s], in.readLong());
+            }
+            Checkpoint.check("seed", seed, in.readLong());
+            step = in.readInt();
+            for (int i = 0; i < N; i++) {
+                id.put(i, in.readInt());
+                kind.put(i, in.readByte());
+            }
+            readColumn(in, x);
+            readColumn(in, y);
+            readColumn(in, cos);
+            readColumn(in, sin);
+            readColumn(in, angle);
+            orderPerTime.clear();
+            for (int t = 0; t <= step; t++) {
+                orderPerTime.put(t, in.readDouble());
+            }
+            // Los observables acumulados hasta el checkpoint vienen con él
+            Checkpoint.check("observables", observables != null ? 1 : 0, in.readBoolean() ? 1 : 0);
+            if (observables != null) {
+                observables.readState(in);
+            }
+            return step;
+        });
+    }
+
+    private void writeColumn(DataOutputStream out, DoubleBuffer column) throws IOException {
+        for (int i = 0; i < N; i++) {
+            out.writeDouble(column.get(i));
+        }
+    }
+
+    private void readColumn(DataInputStream in, DoubleBuffer column) throws IOException {
+        for (int i = 0; i < N; i++) {
+            column.put(i, in.readDouble());
+        }
+    }
+
+    /*
+        Recorre cada par (i, j) con i < j a distancia <= r una sola vez, usando la cell list (r <= tamaño de celda).
+        Los índices son los del orden actual de las columnas: antes se reordena por celda, lo que no cambia
+        el resultado de los pasos siguientes porque el paso empieza con el mismo reordenamiento (counting sort estable).
+     */
+    public void forEachPair(double r, PairVisitor visitor) {
+        if (r > cellSize) {
+            throw new IllegalArgumentException("r debe ser menor o igual al tamaño de celda " + cellSize);
+        }
+        sortByCell();
+        double r2 = r * r;
+        for (int i = 0; i < N; i++) {
+            double px = x.get(i);
+            double py = y.get(i);
+            int cx = cellOf[i] % M;
+            int cy = cellOf[i] / M;
+            for (int dy = -1; dy <= 1; dy++) {
+                int ny = cy + dy;
+                double shiftY = ny < 0 ? -L : (ny >= M ? L : 0);
+                ny = (ny + M) % M;
+                for (int dx = -1; dx <= 1; dx++) {
+                    int nx = cx + dx;
+                    double shiftX = nx < 0 ? -L : (nx >= M ? L : 0);
+                    int nc = ny * M + (nx + M) % M;
+                    for (int j = Math.max(cellStart[nc], i + 1); j < cellStart[nc + 1]; j++) {
+                        double ddx = x.get(j) + shiftX - px;
+                        double ddy = y.get(j) + shiftY - py;
+                        double d2 = ddx * ddx + ddy * ddy;
+                        if (d2 <= r2) {
+                            visitor.visit(i, j, ddx, ddy, d2);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        Cantidad de agentes en cada celda (M x M), según las posiciones actuales.
+     */
+    public int[] cellCounts() {
+        sortByCell();
+        int[] counts = new int[M * M];
+        for (int c = 0; c < M * M; c++) {
+            counts[c] = cellStart[c + 1] - cellStart[c];
+        }
+        return counts;
+    }
+
+    public void setObservables(FlockObservables observables) {
+        this.observables = observables;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    public double getL() {
+        return L;
+    }
+
+    public int getM() {
+        return M;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getId(int i) {
+        return id.get(i);
+    }
+
+    public Species getSpecies(int i) {
+        return species.get(kind.get(i));
+    }
+
+    public double getX(int i) {
+        return x.get(i);
+    }
+
+    public double getY(int i) {
+        return y.get(i);
+    }
+
+    public double getCos(int i) {
+        return cos.get(i);
+    }
+
+    public double getSin(int i) {
+        return sin.get(i);
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public double getAngle(int i) {
+        return angle.get(i);
+    }
+}
@@ -9,71 +9,63 @@ import java.util.*;
 public class Main {
 
 
-    public static void save(int N, int L, String directoryPath, Map<Integer, List<Particle>> particlesPerTime) {
-        try {
-            // Crear la ruta para el archivo de posiciones dentro de la carpeta "test"
-            String staticPath = Paths.get(directoryPath, "static").toString();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
-                writer.write("" + L + "\n");
-                writer.write("" + N + "\n");
-                for (Particle particle : particlesPerTime.get(0)) {
-                    writer.write(particle.getRadius() + "\t" + 1 + "\n");
-                }
-            }
+    public static void save(int N, int L, String directoryPath, Map<Integer, List<Particle>> particlesPerTime) throws IOException {
+        saveStatic(N, L, directoryPath, firstStep(particlesPerTime));
+        saveDynamic(directoryPath, particlesPerTime);
+    }
 
-            // Crear la ruta para el archivo de posiciones dentro de la carpeta "test"
-            String dynamicPath = Paths.get(directoryPath, "dynamic").toString();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(dynamicPath))) {
-                for (int t = 0; t < particlesPerTime.keySet().size(); t++) {
-                    writer.write("" + t);
-                    writer.newLine();
+    /*
+    Primer paso guardado: el 0, salvo en un run reanudado de un checkpoint (ahí empieza en el paso del checkpoint).
+     */
+    public static List<Particle> firstStep(Map<Integer, List<Particle>> particlesPerTime) {
+        return particlesPerTime.get(Collections.min(particlesPerTime.keySet()));
+    }
 
-                    for (Particle particle : particlesPerTime.get(t)) {
-                        writer.write(particle.getId() + "\t" + particle.getPosX() + "\t" + particle.getPosY() + "\t" + particle.getVel() + "\t" + particle.getAngle() );
-                        writer.newLine();
-                    }
-                }
+    public static void saveStatic(int N, int L, String directoryPath, List<Particle> particles) throws IOException {
+        // Crear la ruta para el archivo de posiciones dentro de la carpeta "test"
+        String staticPath = Paths.get(directoryPath, "static").toString();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
+            writer.write("" + L + "\n");
+            writer.write("" + N + "\n");
+            for (Particle particle : particles) {
+                writer.write(particle.getRadius() + "\t" + 1 + "\n");
             }
-        } catch (IOException e) {
-            System.err.println("Error al guardar los archivos: " + e.getMessage());
         }
     }
 
-    public static void save(String directoryPath, Map<Integer, Double> orderPerTime) {
-        try {
-            // Crear la ruta para el archivo de orders dentro de la carpeta "test"
-            String staticPath = Paths.get(directoryPath, "orders").toString();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
-                for (Integer time : orderPerTime.keySet()) {
-                    writer.write(time + "\t" + orderPerTime.get(time) + "\n");
+    public static void saveDynamic(String directoryPath, Map<Integer, List<Particle>> particlesPerTime) throws IOException {
+
+        // Crear la ruta para el archivo de posiciones dentro de la carpeta "test"
+        String dynamicPath = Paths.get(directoryPath, "dynamic").toString();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(dynamicPath))) {
+            for (int t : new TreeSet<>(particlesPerTime.keySet())) {
+                writer.write("" + t);
+                writer.newLine();
+
+                for (Particle particle : particlesPerTime.get(t)) {
+                    writer.write(particle.getId() + "\t" + particle.getPosX() + "\t" + particle.getPosY() + "\t" + particle.getVel() + "\t" + particle.getAngle() );
+                    writer.newLine();
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error al guardar el archivo orders: " + e.getMessage());
         }
     }
 
-    public static void saveOrdersPerNoise(String directoryPath, double order) {
-        try {
-            // Crear la ruta para el archivo de orders dentro de la carpeta "test"
-            String staticPath = Paths.get(directoryPath, "prom_order").toString();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
-                writer.write("" + order);
+    public static void save(String directoryPath, Map<Integer, Double> orderPerTime) throws IOException {
+        // Crear la ruta para el archivo de orders dentro de la carpeta "test"
+        String staticPath = Paths.get(directoryPath, "orders").toString();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
+            for (Integer time : orderPerTime.keySet()) {
+                writer.write(time + "\t" + orderPerTime.get(time) + "\n");
             }
-        } catch (Exception e) {
-            System.err.println("Error al guardar el archivo prom_order: " + e.getMessage());
         }
     }
 
-    public static void saveOrdersPerDensity(String directoryPath, double order) {
-        try {
-            // Crear la ruta para el archivo de orders dentro de la carpeta "test"
-            String staticPath = Paths.get(directoryPath, "prom_order_density").toString();
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(staticPath))) {
-                writer.write("" + order);
-            }
-        } catch (Exception e) {
-            System.err.println("Error al guardar el archivo prom_order_density: " + e.getMessage());
+    /*
+    Guarda el promedio de Va (prom_order para ruido, prom_order_density para densidad).
+     */
+    public static void saveOrder(Path orderPath, double order) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(orderPath)) {
+            writer.write("" + order);
         }
     }
 
@@ -81,14 +73,28 @@ public class Main {
     Promedio de Va, en función del tiempo, para un noise constante.
      */
     public static double getOrder(int M, int N, int L, int maxTime, double noise) throws Exception {
+        return getOrder(M, N, L, maxTime, noise, false);
+    }
+
+    public static double getOrder(int M, int N, int L, int maxTime, double noise, boolean fastTrig) throws Exception {
         OffLattice offLattice = new OffLattice(M,N,L,noise);
+        offLattice.setFastTrig(fastTrig);
         Map<Integer, List<Particle>> particlesPerTime = offLattice.run(1, maxTime);
-        Map<Integer, Double> orderPerTime = offLattice.orderPerTime(particlesPerTime);
+        return averageOrder(offLattice.orderPerTime(particlesPerTime));
+    }
+
+    // Pasos del transitorio que se descartan al promediar Va
+    public static final int TRANSIENT = 115;
+
+    /*
+    Promedio de Va desde el paso TRANSIENT (descarta el transitorio).
+     */
+    public static double averageOrder(Map<Integer, Double> orderPerTime) {
         double prom = 0;
-        for (int i = 115; i<orderPerTime.keySet().size();i++) {
+        for (int i = TRANSIENT; i<orderPerTime.keySet().size();i++) {
             prom += orderPerTime.get(i);
         }
-        prom /= (orderPerTime.keySet().size()- 115);
+        prom /= (orderPerTime.keySet().size()- TRANSIENT);
         return prom;
     }
 
@@ -106,13 +112,21 @@ public class Main {
     }
 
     public static void main(String[] args) throws Exception {
-        int maxTime = 800;
-
-        List<Double> noises = new ArrayList<>();
-        for (double i = 0; i <= 5; i += 0.25) {
-            noises.add(i);
+        // Uso: Main [threads] [--fast-trig] [--binary | --binary-quantized] [--checkpoint-every pasos] [--large]
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean fastTrig = arguments.remove("--fast-trig");
+        // Trayectoria en dynamic.bin (TrajectoryWriter) en lugar del archivo de texto
+        boolean quantized = arguments.remove("--binary-quantized");
+        boolean binary = arguments.remove("--binary") || quantized;
+        int checkpointEvery = 0;
+        int checkpointFlag = arguments.indexOf("--checkpoint-every");
+        if (checkpointFlag >= 0) {
+            checkpointEvery = Integer.parseInt(arguments.remove(checkpointFlag + 1));
+            arguments.remove(checkpointFlag);
         }
-
+        // Suma el barrido de ruido con N grande (LargeOffLattice + FlockObservables, sin trayectoria)
+        boolean large = arguments.remove("--large");
+        int threads = !arguments.isEmpty() ? Integer.parseInt(arguments.get(0)) : Runtime.getRuntime().availableProcessors();
 
         int[] ms = new int[] { 2, 4, 9 };
         int[] ns = new int[] { 40, 100, 400 };
@@ -120,43 +134,22 @@ public class Main {
         int[] maxTimes = new int[] { 200, 400, 800 };
         int [] ns2 = new int[] {50,100,150,200,250,300,350,400,450,500};
         double[] densities = new double[] { 0.5,1,1.5,2,2.5,3,3.5,4,4.5,5 };
-        for (int i = 0; i < ms.length; i++) {
-            for (int j = 0; j < noises.size(); j++) {
-                OffLattice offLattice = new OffLattice(ms[i], ns[i], ls[i], noises.get(j));
-                Map<Integer, List<Particle>> particlesPerTime = offLattice.run(1, maxTimes[i]);
-
-                Map<Integer, Double> orderPerTime = offLattice.orderPerTime(particlesPerTime);
-                double order = Main.getOrder(ms[i], ns[i], ls[i], maxTimes[i], noises.get(j));
-                // --- Save ---
-                String projectPath = Paths.get("").toAbsolutePath().toString();
-                Path directoryPath = Paths.get(projectPath, String.format("/test/outputs/N%dL%d_n%.2f", ns[i], ls[i], noises.get(j)));
-
-                // Crea los directorios si no existen
-                Files.createDirectories(directoryPath);
-
-                Main.save(offLattice.getN(), ls[i], directoryPath.toString(), particlesPerTime);
-                Main.save(directoryPath.toString(), orderPerTime);
-                Main.saveOrdersPerNoise(directoryPath.toString(), order);
-            }
-        }
-        for (int i =0; i < ns2.length; i++){
-            double noise = 0.5;
-            OffLattice offLattice = new OffLattice(9, ns2[i], 10, noise);
-            Map<Integer, List<Particle>> particlesPerTime = offLattice.run(1, 400);
-
-            Map<Integer, Double> orderPerTime = offLattice.orderPerTime(particlesPerTime);
-            double order = Main.getOrder(9, ns2[i], 10,400, noise);
-
-            // --- Save ---
-            String projectPath = Paths.get("").toAbsolutePath().toString();
-            Path directoryPath = Paths.get(projectPath, String.format("/test/outputs/density/density_p%.2f", densities[i]));
-
-            // Crea los directorios si no existen
-            Files.createDirectories(directoryPath);
-            Main.save(offLattice.getN(), 10, directoryPath.toString(), particlesPerTime);
-            Main.save(directoryPath.toString(), orderPerTime);
-            Main.saveOrdersPerDensity(directoryPath.toString(), order);
+
+        Sweep sweep = new Sweep()
+                .noise(ms, ns, ls, maxTimes, Sweep.range(0, 5, 0.25))
+                .density(9, 10, 400, 0.5, ns2, densities);
+        if (large) {
+            // Misma densidad que el sistema de N = 400 (4 agentes por unidad de área)
+            sweep.large(new int[] { 10000, 40000 }, new int[] { 50, 100 }, new int[] { 1000, 1000 }, Sweep.range(0, 5, 0.5), 1);
         }
 
+        // --- Save ---
+        String projectPath = Paths.get("").toAbsolutePath().toString();
+        Path outputsPath = Paths.get(projectPath, "test", "outputs");
+        new SweepExecutor(outputsPath, threads)
+                .withFastTrig(fastTrig)
+                .withBinaryTrajectory(binary, quantized)
+                .withCheckpoints(checkpointEvery)
+                .run(sweep);
     }
 }
\ No newline at end of file
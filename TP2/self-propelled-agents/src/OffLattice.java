@@ -1,3 +1,8 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 public class OffLattice {
@@ -6,6 +11,9 @@ public class OffLattice {
 
     private static double VELOCITY = 0.03;
 
+    // Formato del checkpoint (saveCheckpoint / restoreCheckpoint)
+    private static final int CHECKPOINT_VERSION = 1;
+
     private int M; //Dimension de la matriz
 
     private int N; //Cantidad de particulas
@@ -14,13 +22,33 @@ public class OffLattice {
     private double noiseAmplitude;
     private List<Particle> particlesList;
 
+    // Si está activo, sin/cos de los nuevos ángulos salen de FastTrig (error <= FastTrig.MAX_ERROR).
+    private boolean fastTrig = false;
+
+    // Un único generador por sistema (posiciones iniciales y ruido), así su estado entra en el checkpoint.
+    private Random random;
+
+    // Va de cada paso, calculado a medida que se avanza (incluye los pasos anteriores a un checkpoint del que se
+    // reanudó, que ya no están en particlesPerTime).
+    private final Map<Integer, Double> orders = new HashMap<>();
+
     public OffLattice(int m, int n, int l, double noiseAmplitude) {
+        this(m, n, l, noiseAmplitude, new Random());
+    }
+
+    public OffLattice(int m, int n, int l, double noiseAmplitude, long seed) {
+        this(m, n, l, noiseAmplitude, new Random(seed));
+    }
+
+    private OffLattice(int m, int n, int l, double noiseAmplitude, Random random) {
         M = m;
         N = n;
         L = l;
         this.noiseAmplitude = noiseAmplitude;
+        this.random = random;
         this.particlesList = generateRandomParticles();
         this.particlesPerTime.put(0, particlesList);
+        this.orders.put(0, orderParameter(particlesList));
     }
 
     public OffLattice(int m, int l, double noiseAmplitude, List<Particle> initialParticles) {
@@ -28,12 +56,13 @@ public class OffLattice {
         N = initialParticles.size();
         L = l;
         this.noiseAmplitude = noiseAmplitude;
+        this.random = new Random();
         this.particlesList = initialParticles;
         this.particlesPerTime.putIfAbsent(0, particlesList);
+        this.orders.put(0, orderParameter(particlesList));
     }
 
     private List<Particle> generateRandomParticles() {
-        Random random = new Random();
         List<Particle> particlesList = new ArrayList<>();
 
         for (int i = 0; i < N; i++) {
@@ -52,8 +81,8 @@ public class OffLattice {
         double cosSum = 0;
 
         for ( Particle particle :neighbours) {
-            sinSum += Math.sin(particle.getAngle());
-            cosSum += Math.cos(particle.getAngle());
+            sinSum += particle.getSin();
+            cosSum += particle.getCos();
         }
 
         double avgSin = sinSum/neighbours.size();
@@ -61,13 +90,50 @@ public class OffLattice {
 
         double minValue = -noiseAmplitude/2;
         double maxValue = noiseAmplitude/2;
-        double noise = minValue + (maxValue - minValue) * Math.random();
+        double noise = minValue + (maxValue - minValue) * random.nextDouble();
 
         return ((Math.atan2(avgSin,avgCos) + noise) + (2 * Math.PI)) % (2 * Math.PI);
     }
 
     public Map<Integer,List<Particle>> run(int rc, int maxTime) throws Exception {
-        for (int time = 1; time < maxTime ; time++) {
+        return run(rc, maxTime, null);
+    }
+
+    /*
+        Si writer no es null, cada paso se encola en el writer apenas se calcula (la escritura corre en otro thread)
+        y no se retiene: particlesPerTime queda solo con el último paso (Va de todos sale de orderPerTime).
+     */
+    public Map<Integer,List<Particle>> run(int rc, int maxTime, TrajectoryWriter writer) throws Exception {
+        return run(rc, maxTime, writer, null, 0);
+    }
+
+    /*
+        Si checkpointPath no es null se guarda un checkpoint cada checkpointEvery pasos, y si el archivo ya existe
+        se reanuda desde ahí. Además cada paso se agrega a un log (stepLogPath) para que el run reanudado tenga la
+        trayectoria completa: al reanudar se leen del log los pasos anteriores al checkpoint (y se vuelven a pasar
+        al writer), así el resultado es el mismo que el de un run sin cortes.
+     */
+    public Map<Integer,List<Particle>> run(int rc, int maxTime, TrajectoryWriter writer, Path checkpointPath, int checkpointEvery) throws Exception {
+        int start = 1;
+        Path logPath = checkpointPath == null ? null : stepLogPath(checkpointPath);
+        if (checkpointPath != null && Files.exists(checkpointPath)) {
+            start = restoreCheckpoint(checkpointPath) + 1;
+            replayStepLog(logPath, start - 1, writer);
+        }
+        if (writer != null) {
+            writer.writeFrame(start - 1, this.particlesPerTime.get(start - 1));
+        }
+        try (DataOutputStream log = logPath == null ? null : openStepLog(logPath, start == 1)) {
+            if (log != null && start == 1) {
+                appendStep(log, this.particlesPerTime.get(0));
+            }
+            runSteps(rc, start, maxTime, writer, log, checkpointPath, checkpointEvery);
+        }
+        return particlesPerTime;
+    }
+
+    private void runSteps(int rc, int start, int maxTime, TrajectoryWriter writer, DataOutputStream log, Path checkpointPath, int checkpointEvery) throws Exception {
+        for (int time = start; time < maxTime ; time++) {
             CIMImpl cim = new CIMImpl(M,N,L,0, this.particlesPerTime.get(time-1));
             Map<Integer,List<Particle>> neighboursByParticle = cim.findInteractions(rc,true);
             List<Particle> newParticles = new ArrayList<>();
@@ -75,31 +141,172 @@ public class OffLattice {
                 List<Particle> neighbours = neighboursByParticle.getOrDefault(p.getId(), new ArrayList<>());
                 neighbours.add(p);
                 double newAngle = calculateAngle(neighbours);
-                Pair<Double,Double> position = calculatePosition(p,newAngle,time);
+                double cos = fastTrig ? FastTrig.cos(newAngle) : Math.cos(newAngle);
+                double sin = fastTrig ? FastTrig.sin(newAngle) : Math.sin(newAngle);
+                Pair<Double,Double> position = calculatePosition(p,cos,sin,time);
 
-                newParticles.add(new Particle(p.getId(), position.first, position.second, 0,VELOCITY,newAngle));
+                newParticles.add(new Particle(p.getId(), position.first, position.second, 0,VELOCITY,newAngle,cos,sin));
             }
             particlesPerTime.putIfAbsent(time,newParticles);
+            orders.put(time, calculateOrderParameter(newParticles));
+            if (writer != null) {
+                writer.writeFrame(time, newParticles);
+                // Ya está en el archivo: solo hace falta el paso anterior
+                particlesPerTime.remove(time - 1);
+            }
+            if (log != null) {
+                appendStep(log, newParticles);
+            }
+            if (checkpointPath != null && checkpointEvery > 0 && time % checkpointEvery == 0) {
+                // El log tiene que llegar al disco antes que el checkpoint que lo da por escrito
+                log.flush();
+                saveCheckpoint(checkpointPath, time);
+            }
+        }
+    }
+
+    /*
+        Log de pasos de un checkpoint: cada paso ocupa stepBytes() (las mismas columnas que el checkpoint), así
+        el largo válido para el checkpoint del paso k es (k + 1) * stepBytes() y no hace falta guardarlo.
+     */
+    public static Path stepLogPath(Path checkpointPath) {
+        return checkpointPath.resolveSibling(checkpointPath.getFileName() + ".steps");
+    }
+
+    private long stepBytes() {
+        return (long) N * (Integer.BYTES + 6 * Double.BYTES);
+    }
+
+    private DataOutputStream openStepLog(Path path, boolean truncate) throws IOException {
+        OutputStream out = truncate
+                ? Files.newOutputStream(path)
+                : Files.newOutputStream(path, StandardOpenOption.APPEND);
+        return new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    private void appendStep(DataOutputStream log, List<Particle> particles) throws IOException {
+        for (Particle p : particles) {
+            log.writeInt(p.getId());
+            log.writeDouble(p.getPosX());
+            log.writeDouble(p.getPosY());
+            log.writeDouble(p.getVel());
+            log.writeDouble(p.getAngle());
+            log.writeDouble(p.getCos());
+            log.writeDouble(p.getSin());
+        }
+    }
+
+    /*
+        Lee del log los pasos 0 .. time - 1 (a particlesPerTime, o directo al writer si hay) y lo corta después del
+        paso time (lo que se escribió después del checkpoint se vuelve a calcular).
+     */
+    private void replayStepLog(Path path, int time, TrajectoryWriter writer) throws IOException {
+        long valid = (time + 1) * stepBytes();
+        if (!Files.exists(path) || Files.size(path) < valid) {
+            throw new IOException("El log de pasos " + path + " no llega al checkpoint del paso " + time);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(valid);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            for (int t = 0; t < time; t++) {
+                List<Particle> particles = new ArrayList<>(N);
+                for (int i = 0; i < N; i++) {
+                    particles.add(new Particle(in.readInt(), in.readDouble(), in.readDouble(), 0, in.readDouble(),
+                            in.readDouble(), in.readDouble(), in.readDouble()));
+                }
+                if (writer != null) {
+                    writer.writeFrame(t, particles);
+                } else {
+                    particlesPerTime.put(t, particles);
+                }
+            }
         }
-        return particlesPerTime;
     }
 
     public Map<Integer, Double> orderPerTime(Map<Integer, List<Particle>> particlesPerTime) {
-        Map<Integer, Double> map = new HashMap<>();
-        for (int i = 0; i < particlesPerTime.keySet().size(); i++) {
-            map.put(i, calculateOrderParameter(particlesPerTime.get(i)));
+        Map<Integer, Double> map = new HashMap<>(orders);
+        for (Map.Entry<Integer, List<Particle>> entry : particlesPerTime.entrySet()) {
+            if (!map.containsKey(entry.getKey())) {
+                map.put(entry.getKey(), calculateOrderParameter(entry.getValue()));
+            }
         }
         return map;
     }
 
+    /*
+        Guarda el estado del paso time: parámetros, estado del Random, partículas (en el mismo orden de la lista,
+        que define el orden de las sumas) y Va de los pasos anteriores.
+     */
+    public void saveCheckpoint(Path path, int time) throws IOException {
+        List<Particle> particles = particlesPerTime.get(time);
+        Checkpoint.write(path, "OffLattice", CHECKPOINT_VERSION, out -> {
+            out.writeInt(M);
+            out.writeInt(N);
+            out.writeInt(L);
+            out.writeDouble(noiseAmplitude);
+            out.writeBoolean(fastTrig);
+            out.writeInt(time);
+            Checkpoint.writeRandom(out, random);
+            for (Particle p : particles) {
+                out.writeInt(p.getId());
+                out.writeDouble(p.getPosX());
+                out.writeDouble(p.getPosY());
+                out.writeDouble(p.getVel());
+                out.writeDouble(p.getAngle());
+                out.writeDouble(p.getCos());
+                out.writeDouble(p.getSin());
+            }
+            for (int t = 0; t < time; t++) {
+                out.writeDouble(orders.get(t));
+            }
+        });
+    }
+
+    /*
+        Reemplaza el estado actual por el del checkpoint y devuelve el paso guardado.
+     */
+    public int restoreCheckpoint(Path path) throws IOException {
+        return Checkpoint.read(path, "OffLattice", CHECKPOINT_VERSION, in -> {
+            Checkpoint.check("M", M, in.readInt());
+            Checkpoint.check("N", N, in.readInt());
+            Checkpoint.check("L", L, in.readInt());
+            Checkpoint.check("noise", noiseAmplitude, in.readDouble());
+            fastTrig = in.readBoolean();
+            int time = in.readInt();
+            random = Checkpoint.readRandom(in);
+
+            List<Particle> particles = new ArrayList<>(N);
+            for (int i = 0; i < N; i++) {
+                particles.add(new Particle(in.readInt(), in.readDouble(), in.readDouble(), 0, in.readDouble(),
+                        in.readDouble(), in.readDouble(), in.readDouble()));
+            }
+            orders.clear();
+            for (int t = 0; t < time; t++) {
+                orders.put(t, in.readDouble());
+            }
+            orders.put(time, calculateOrderParameter(particles));
+
+            particlesPerTime.clear();
+            particlesPerTime.put(time, particles);
+            particlesList = particles;
+            return time;
+        });
+    }
+
     public double calculateOrderParameter(List<Particle> particles){
+        return orderParameter(particles);
+    }
+
+    // Estático para poder usarlo desde los constructores
+    private static double orderParameter(List<Particle> particles) {
         double vxSum = 0;
         double vySum = 0;
 
         // Sumar las componentes x e y de todas las velocidades
         for (Particle p : particles) {
-            vxSum += p.getVel() * Math.cos(p.getAngle());
-            vySum += p.getVel() * Math.sin(p.getAngle());
+            vxSum += p.getVel() * p.getCos();
+            vySum += p.getVel() * p.getSin();
         }
 
         double avgVx = vxSum / particles.size();
@@ -108,10 +315,10 @@ public class OffLattice {
 
         return va / VELOCITY;
     }
-    private Pair<Double,Double> calculatePosition(Particle p , double newAngle, int time){
+    private Pair<Double,Double> calculatePosition(Particle p , double cos, double sin, int time){
         double dt = 1;
-        double vx = VELOCITY * Math.cos(newAngle);
-        double vy = VELOCITY * Math.sin(newAngle);
+        double vx = VELOCITY * cos;
+        double vy = VELOCITY * sin;
 
         double newX = p.getPosX() + vx * dt;
         double newY = p.getPosY() + vy * dt;
@@ -143,6 +350,14 @@ public class OffLattice {
         return L;
     }
 
+    public boolean isFastTrig() {
+        return fastTrig;
+    }
+
+    public void setFastTrig(boolean fastTrig) {
+        this.fastTrig = fastTrig;
+    }
+
     class Pair<U,T> {
         private U first;
         private T second;
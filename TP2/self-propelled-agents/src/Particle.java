@@ -11,14 +11,24 @@ public class Particle {
 
     private double angle;
 
+    // Componentes del versor de dirección, se calculan una sola vez por paso.
+    private double cos;
+    private double sin;
+
 
     public Particle(int id, double posX, double posY, double radius, double vel, double angle) {
+        this(id, posX, posY, radius, vel, angle, Math.cos(angle), Math.sin(angle));
+    }
+
+    public Particle(int id, double posX, double posY, double radius, double vel, double angle, double cos, double sin) {
         this.id = id;
         this.posX = posX;
         this.posY = posY;
         this.radius = radius;
         this.vel = vel;
         this.angle = angle;
+        this.cos = cos;
+        this.sin = sin;
     }
 
     public boolean isInside(Particle other) {
@@ -44,6 +54,16 @@ public class Particle {
 
     public void setAngle(double angle) {
         this.angle = angle;
+        this.cos = Math.cos(angle);
+        this.sin = Math.sin(angle);
+    }
+
+    public double getCos() {
+        return cos;
+    }
+
+    public double getSin() {
+        return sin;
     }
 
     public boolean isPartiallyInside(Particle p2) {
@@ -0,0 +1,75 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+    Tipo de agente para LargeOffLattice: velocidad, radio de interacción, cono de visión, ruido
+    y con qué especies se alinea. LargeOffLattice convierte la lista de especies en tablas primitivas
+    indexadas por especie, así el loop de vecinos no hace llamadas virtuales por par.
+ */
+public class Species {
+
+    public static final int MAX_SPECIES = Long.SIZE;
+
+    private final String name;
+    private final double speed;
+    private final double rc;
+    private final double visionAngle;
+    private final double noiseAmplitude;
+    private final Set<Species> ignored = new HashSet<>();
+
+    /*
+        visionAngle es el semiángulo del cono de visión alrededor de la dirección del agente: Math.PI = ve en todas direcciones.
+     */
+    public Species(String name, double speed, double rc, double visionAngle, double noiseAmplitude) {
+        this.name = name;
+        this.speed = speed;
+        this.rc = rc;
+        this.visionAngle = visionAngle;
+        this.noiseAmplitude = noiseAmplitude;
+    }
+
+    public Species(String name, double speed, double rc, double noiseAmplitude) {
+        this(name, speed, rc, Math.PI, noiseAmplitude);
+    }
+
+    /*
+        Los agentes de esta especie no tienen en cuenta a los de las especies indicadas al alinearse.
+     */
+    public Species ignoring(Species... others) {
+        ignored.addAll(Set.of(others));
+        return this;
+    }
+
+    public boolean ignores(Species other) {
+        return ignored.contains(other);
+    }
+
+    public boolean hasVisionCone() {
+        return visionAngle < Math.PI;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public double getRc() {
+        return rc;
+    }
+
+    public double getVisionAngle() {
+        return visionAngle;
+    }
+
+    public double getNoiseAmplitude() {
+        return noiseAmplitude;
+    }
+
+    @Override
+    public String toString() {
+        return "Species(%s, v: %f, rc: %f, vision: %f, noise: %f)".formatted(name, speed, rc, visionAngle, noiseAmplitude);
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    Descripción declarativa de un barrido de parámetros.
+    Cada punto es independiente del resto y sabe en qué directorio (relativo a test/outputs) deja sus resultados.
+ */
+public class Sweep {
+
+    public enum Kind {
+        NOISE("prom_order"),
+        DENSITY("prom_order_density"),
+        // LargeOffLattice con FlockObservables: solo Va y observables, sin trayectoria
+        LARGE("prom_order");
+
+        private final String orderFile;
+
+        Kind(String orderFile) {
+            this.orderFile = orderFile;
+        }
+
+        public String getOrderFile() {
+            return orderFile;
+        }
+    }
+
+    public static class Point {
+        private final Kind kind;
+        private final String name;
+        private final int M;
+        private final int N;
+        private final int L;
+        private final int maxTime;
+        private final double noise;
+        private final long seed;
+
+        public Point(Kind kind, String name, int m, int n, int l, int maxTime, double noise) {
+            this(kind, name, m, n, l, maxTime, noise, 0);
+        }
+
+        public Point(Kind kind, String name, int m, int n, int l, int maxTime, double noise, long seed) {
+            this.kind = kind;
+            this.name = name;
+            M = m;
+            N = n;
+            L = l;
+            this.maxTime = maxTime;
+            this.noise = noise;
+            this.seed = seed;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getM() {
+            return M;
+        }
+
+        public int getN() {
+            return N;
+        }
+
+        public int getL() {
+            return L;
+        }
+
+        public int getMaxTime() {
+            return maxTime;
+        }
+
+        public double getNoise() {
+            return noise;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        @Override
+        public String toString() {
+            return "Point(%s, M: %d, N: %d, L: %d, maxTime: %d, noise: %.2f)".formatted(name, M, N, L, maxTime, noise);
+        }
+    }
+
+    private final List<Point> points = new ArrayList<>();
+
+    /*
+        Ruido x (M, N, L, maxTime): ms, ns, ls y maxTimes se recorren en paralelo (misma posición = mismo sistema).
+     */
+    public Sweep noise(int[] ms, int[] ns, int[] ls, int[] maxTimes, List<Double> noises) {
+        for (int i = 0; i < ms.length; i++) {
+            for (double noise : noises) {
+                // Mismo formato (y locale) que usaban los scripts de python para leer las carpetas.
+                String name = String.format("N%dL%d_n%.2f", ns[i], ls[i], noise);
+                points.add(new Point(Kind.NOISE, name, ms[i], ns[i], ls[i], maxTimes[i], noise));
+            }
+        }
+        return this;
+    }
+
+    /*
+        Densidad: M, L, maxTime y ruido fijos, se varía N. densities[i] corresponde a ns[i] / L^2.
+     */
+    public Sweep density(int m, int l, int maxTime, double noise, int[] ns, double[] densities) {
+        for (int i = 0; i < ns.length; i++) {
+            String name = String.format("density/density_p%.2f", densities[i]);
+            points.add(new Point(Kind.DENSITY, name, m, ns[i], l, maxTime, noise));
+        }
+        return this;
+    }
+
+    /*
+        Ruido x (N, L, maxTime) con LargeOffLattice (rc = 1, M lo calcula el sistema), en test/outputs/large.
+        La semilla es fija para que un punto reanudado desde su checkpoint sea el mismo sistema.
+     */
+    public Sweep large(int[] ns, int[] ls, int[] maxTimes, List<Double> noises, long seed) {
+        for (int i = 0; i < ns.length; i++) {
+            for (double noise : noises) {
+                String name = String.format("large/N%dL%d_n%.2f", ns[i], ls[i], noise);
+                points.add(new Point(Kind.LARGE, name, 0, ns[i], ls[i], maxTimes[i], noise, seed));
+            }
+        }
+        return this;
+    }
+
+    public List<Point> getPoints() {
+        return points;
+    }
+
+    public static List<Double> range(double from, double to, double step) {
+        List<Double> values = new ArrayList<>();
+        for (double v = from; v <= to; v += step) {
+            values.add(v);
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Sweep(%d puntos)", points.size());
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/*
+    Ejecuta los puntos de un Sweep en un pool acotado de threads.
+    Cada punto se escribe primero en test/outputs/.staging/<nombre> y recién al terminar se mueve
+    (de forma atómica) a su carpeta final junto con el archivo DONE. Al reiniciar se saltean los puntos con DONE,
+    y cualquier carpeta a medio escribir de una corrida anterior se descarta y se vuelve a calcular.
+ */
+public class SweepExecutor {
+
+    public static final String DONE = ".done";
+    private static final String STAGING = ".staging";
+    private static final String CHECKPOINTS = ".checkpoints";
+    // Observables de los puntos LARGE: cada cuántos pasos se muestrean y bins de la C(r) de corto alcance
+    private static final int OBSERVABLES_EVERY = 10;
+    private static final int CORRELATION_BINS = 20;
+    private static final int MAX_GRID = 512;
+
+    private final Path outputsPath;
+    private final int threads;
+    private boolean fastTrig = false;
+    private boolean binaryTrajectory = false;
+    private boolean quantized = false;
+    private int checkpointEvery = 0;
+
+    public SweepExecutor(Path outputsPath, int threads) {
+        this.outputsPath = outputsPath;
+        this.threads = threads;
+    }
+
+    public SweepExecutor withFastTrig(boolean fastTrig) {
+        this.fastTrig = fastTrig;
+        return this;
+    }
+
+    /*
+        Guarda la trayectoria en dynamic.bin (ver TrajectoryWriter) en lugar del archivo de texto dynamic.
+     */
+    public SweepExecutor withBinaryTrajectory(boolean binaryTrajectory, boolean quantized) {
+        this.binaryTrajectory = binaryTrajectory;
+        this.quantized = quantized;
+        return this;
+    }
+
+    /*
+        Guarda un checkpoint de cada punto cada checkpointEvery pasos en test/outputs/.checkpoints (0: no se guardan).
+        Un punto cortado se reanuda desde su checkpoint (con la trayectoria completa, ver OffLattice.run); al terminar
+        se borran el checkpoint y su log de pasos.
+     */
+    public SweepExecutor withCheckpoints(int checkpointEvery) {
+        this.checkpointEvery = checkpointEvery;
+        return this;
+    }
+
+    public void run(Sweep sweep) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Map<Sweep.Point, Future<?>> futures = new LinkedHashMap<>();
+        int skipped = 0;
+
+        try {
+            for (Sweep.Point point : sweep.getPoints()) {
+                if (isDone(point)) {
+                    skipped++;
+                    continue;
+                }
+                futures.put(point, pool.submit(() -> {
+                    runPoint(point);
+                    return null;
+                }));
+            }
+            System.out.printf("Sweep: %d puntos, %d ya calculados, %d threads%n", sweep.getPoints().size(), skipped, threads);
+
+            List<Sweep.Point> failed = new ArrayList<>();
+            for (Map.Entry<Sweep.Point, Future<?>> entry : futures.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (ExecutionException e) {
+                    failed.add(entry.getKey());
+                    System.err.println("Error en " + entry.getKey() + ": " + e.getCause().getMessage());
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new Exception("Fallaron " + failed.size() + " puntos del sweep, volver a correr para reintentarlos.");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isDone(Sweep.Point point) {
+        return Files.exists(outputsPath.resolve(point.getName()).resolve(DONE));
+    }
+
+    private void runPoint(Sweep.Point point) throws Exception {
+        Path staging = outputsPath.resolve(STAGING).resolve(point.getName());
+        deleteRecursively(staging);
+        Files.createDirectories(staging);
+
+        Path checkpoint = null;
+        if (checkpointEvery > 0) {
+            checkpoint = outputsPath.resolve(CHECKPOINTS).resolve(point.getName() + ".ckpt");
+            Files.createDirectories(checkpoint.getParent());
+        }
+        if (point.getKind() == Sweep.Kind.LARGE) {
+            runLarge(point, staging, checkpoint);
+        } else {
+            runOffLattice(point, staging, checkpoint);
+        }
+        Files.createFile(staging.resolve(DONE));
+
+        Path target = outputsPath.resolve(point.getName());
+        deleteRecursively(target);
+        Files.createDirectories(target.getParent());
+        Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        if (checkpoint != null) {
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(OffLattice.stepLogPath(checkpoint));
+        }
+        System.out.println("Terminado: " + point);
+    }
+
+    private void runOffLattice(Sweep.Point point, Path staging, Path checkpoint) throws Exception {
+        OffLattice offLattice = new OffLattice(point.getM(), point.getN(), point.getL(), point.getNoise());
+        offLattice.setFastTrig(fastTrig);
+        Map<Integer, List<Particle>> particlesPerTime;
+        if (binaryTrajectory) {
+            try (TrajectoryWriter writer = new TrajectoryWriter(staging.resolve("dynamic.bin"), point.getN(), point.getL(), quantized)) {
+                particlesPerTime = offLattice.run(1, point.getMaxTime(), writer, checkpoint, checkpointEvery);
+            }
+        } else {
+            particlesPerTime = offLattice.run(1, point.getMaxTime(), null, checkpoint, checkpointEvery);
+        }
+        Map<Integer, Double> orderPerTime = offLattice.orderPerTime(particlesPerTime);
+        if (orderPerTime.size() != point.getMaxTime() || (!binaryTrajectory && particlesPerTime.size() != point.getMaxTime())) {
+            // No se marca DONE un punto con la trayectoria incompleta
+            throw new IllegalStateException("Trayectoria incompleta en " + point + ": " + particlesPerTime.size() + " pasos");
+        }
+        // Del mismo run que se guarda (antes Main.getOrder corría otra simulación completa)
+        double order = Main.averageOrder(orderPerTime);
+
+        Main.saveStatic(offLattice.getN(), point.getL(), staging.toString(), Main.firstStep(particlesPerTime));
+        if (!binaryTrajectory) {
+            Main.saveDynamic(staging.toString(), particlesPerTime);
+        }
+        Main.save(staging.toString(), orderPerTime);
+        Main.saveOrder(staging.resolve(point.getKind().getOrderFile()), order);
+    }
+
+    /*
+        Punto LARGE: LargeOffLattice con FlockObservables, sin trayectoria. Se guardan Va por paso, su promedio y los
+        observables (clusters, C(r) de corto y largo alcance, densidad local), muestreados desde el fin del transitorio.
+     */
+    private void runLarge(Sweep.Point point, Path staging, Path checkpoint) throws Exception {
+        LargeOffLattice system = new LargeOffLattice(point.getN(), point.getL(), 1, point.getNoise(), point.getSeed());
+        // Los puntos ya corren en paralelo en el pool, el paso de cada uno va en un solo thread
+        system.setParallel(false);
+        FlockObservables observables = new FlockObservables(OBSERVABLES_EVERY, 1, system.getCellSize(), CORRELATION_BINS)
+                .withWarmup(Main.TRANSIENT)
+                .withLongRangeCorrelation(gridSize(point.getL(), system.getCellSize()));
+        system.setObservables(observables);
+
+        Map<Integer, Double> orderPerTime = system.run(point.getMaxTime(), checkpoint, checkpointEvery);
+        if (orderPerTime.size() != point.getMaxTime()) {
+            throw new IllegalStateException("Run incompleto en " + point + ": " + orderPerTime.size() + " pasos");
+        }
+        Main.save(staging.toString(), orderPerTime);
+        Main.saveOrder(staging.resolve(point.getKind().getOrderFile()), Main.averageOrder(orderPerTime));
+        observables.save(staging.resolve("observables"));
+    }
+
+    /*
+        Potencia de 2 más chica con celdas de la grilla de C(r) no más grandes que las de la cell list (a lo sumo MAX_GRID).
+     */
+    private static int gridSize(double L, double cellSize) {
+        int G = 2;
+        while (G < MAX_GRID && L / G > cellSize) {
+            G *= 2;
+        }
+        return G;
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            List<Path> paths = walk.sorted(Comparator.reverseOrder()).toList();
+            for (Path p : paths) {
+                Files.delete(p);
+            }
+        }
+    }
+}
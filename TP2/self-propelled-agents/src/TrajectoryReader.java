@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Lectura del formato de TrajectoryWriter. Usa el índice del final del archivo para leer cualquier frame directamente.
+ */
+public class TrajectoryReader implements AutoCloseable {
+
+    private final FileChannel channel;
+    private final int N;
+    private final float L;
+    private final boolean quantized;
+    private final long[] offsets;
+
+    public TrajectoryReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        ByteBuffer header = read(0, TrajectoryWriter.HEADER_BYTES);
+        if (header.getInt() != TrajectoryWriter.MAGIC) {
+            throw new IOException("No es un archivo de trayectoria: " + path);
+        }
+        int version = header.getInt();
+        if (version != TrajectoryWriter.VERSION) {
+            throw new IOException("Versión de trayectoria no soportada: " + version);
+        }
+        this.N = header.getInt();
+        this.L = header.getFloat();
+        this.quantized = (header.getInt() & TrajectoryWriter.QUANTIZED) != 0;
+
+        ByteBuffer footer = read(channel.size() - TrajectoryWriter.FOOTER_BYTES, TrajectoryWriter.FOOTER_BYTES);
+        long indexOffset = footer.getLong();
+        int frames = footer.getInt();
+        if (footer.getInt() != TrajectoryWriter.INDEX_MAGIC) {
+            throw new IOException("Trayectoria sin índice (¿no se cerró el writer?): " + path);
+        }
+
+        ByteBuffer index = read(indexOffset, frames * Long.BYTES);
+        this.offsets = new long[frames];
+        for (int i = 0; i < frames; i++) {
+            offsets[i] = index.getLong();
+        }
+    }
+
+    public int getFrameCount() {
+        return offsets.length;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    public float getL() {
+        return L;
+    }
+
+    public List<Particle> readFrame(int frame) throws IOException {
+        long offset = offsets[frame];
+        long end = frame + 1 < offsets.length ? offsets[frame + 1] : channel.size() - TrajectoryWriter.FOOTER_BYTES - (long) offsets.length * Long.BYTES;
+        ByteBuffer buffer = read(offset, (int) (end - offset));
+
+        buffer.getInt(); // time
+        int n = buffer.getInt();
+        int[] ids = new int[n];
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] vel = new double[n];
+        double[] angle = new double[n];
+
+        for (int i = 0; i < n; i++) ids[i] = buffer.getInt();
+        if (quantized) {
+            for (int i = 0; i < n; i++) x[i] = dequantize(buffer.getShort(), L);
+            for (int i = 0; i < n; i++) y[i] = dequantize(buffer.getShort(), L);
+            for (int i = 0; i < n; i++) vel[i] = buffer.getFloat();
+            for (int i = 0; i < n; i++) angle[i] = dequantize(buffer.getShort(), 2 * Math.PI);
+        } else {
+            for (int i = 0; i < n; i++) x[i] = buffer.getFloat();
+            for (int i = 0; i < n; i++) y[i] = buffer.getFloat();
+            for (int i = 0; i < n; i++) vel[i] = buffer.getFloat();
+            for (int i = 0; i < n; i++) angle[i] = buffer.getFloat();
+        }
+
+        List<Particle> particles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            particles.add(new Particle(ids[i], x[i], y[i], 0, vel[i], angle[i]));
+        }
+        return particles;
+    }
+
+    private static double dequantize(short value, double range) {
+        return Short.toUnsignedInt(value) / TrajectoryWriter.QUANTUM * range;
+    }
+
+    private ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Fin de archivo inesperado en " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+    Escritura binaria de la trayectoria (reemplazo del archivo "dynamic" de texto).
+    La simulación solo copia cada paso a arrays primitivos y lo encola; un thread aparte codifica y escribe a disco.
+    La cola es acotada: si el disco no da abasto la simulación se bloquea en writeFrame en lugar de acumular memoria.
+
+    Formato (little endian):
+        Header: int MAGIC, int VERSION, int N, float L, int flags (bit 0 = cuantizado)
+        Frame:  int time, int n, int[n] id, x[n], y[n], float[n] vel, angle[n]
+                x, y, angle son float32, o uint16 si el archivo está cuantizado (x,y en [0, L), angle en [0, 2π)).
+        Footer: long[frames] offset de cada frame, long offset del índice, int frames, int INDEX_MAGIC
+    Con el footer TrajectoryReader puede ir directo a cualquier frame.
+ */
+public class TrajectoryWriter implements AutoCloseable {
+
+    public static final int MAGIC = 0x564B5452;        // "VKTR"
+    public static final int INDEX_MAGIC = 0x564B5449;  // "VKTI"
+    public static final int VERSION = 1;
+    public static final int QUANTIZED = 1;
+    public static final int HEADER_BYTES = 5 * Integer.BYTES;
+    public static final int FOOTER_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    static final double QUANTUM = 65536;
+
+    private static final Frame POISON = new Frame(-1, 0);
+
+    private final FileChannel channel;
+    private final int N;
+    private final int L;
+    private final boolean quantized;
+    private final BlockingQueue<Frame> queue;
+    private final Thread worker;
+    private final List<Long> offsets = new ArrayList<>();
+
+    private volatile Exception error;
+    private boolean closed = false;
+
+    public TrajectoryWriter(Path path, int N, int L, boolean quantized) throws IOException {
+        this(path, N, L, quantized, 64);
+    }
+
+    public TrajectoryWriter(Path path, int N, int L, boolean quantized, int queueCapacity) throws IOException {
+        this.N = N;
+        this.L = L;
+        this.quantized = quantized;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(N).putFloat(L).putInt(quantized ? QUANTIZED : 0);
+        header.flip();
+        writeFully(header);
+
+        this.worker = new Thread(this::drain, "trajectory-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /*
+        Copia el estado de las partículas y lo encola. Bloquea si la cola está llena.
+     */
+    public void writeFrame(int time, List<Particle> particles) throws IOException {
+        checkError();
+        Frame frame = new Frame(time, particles.size());
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            frame.ids[i] = p.getId();
+            frame.x[i] = (float) p.getPosX();
+            frame.y[i] = (float) p.getPosY();
+            frame.vel[i] = (float) p.getVel();
+            frame.angle[i] = (float) p.getAngle();
+        }
+        try {
+            queue.put(frame);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido al encolar el frame " + time, e);
+        }
+    }
+
+    private void drain() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(frameBytes(N)).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame == POISON) {
+                    return;
+                }
+                if (buffer.capacity() < frameBytes(frame.ids.length)) {
+                    buffer = ByteBuffer.allocateDirect(frameBytes(frame.ids.length)).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                buffer.clear();
+                encode(frame, buffer);
+                buffer.flip();
+                offsets.add(channel.position());
+                writeFully(buffer);
+            }
+        } catch (Exception e) {
+            error = e;
+            // Vaciamos la cola para no dejar bloqueado al productor.
+            queue.clear();
+        }
+    }
+
+    private void encode(Frame frame, ByteBuffer buffer) {
+        int n = frame.ids.length;
+        buffer.putInt(frame.time).putInt(n);
+        for (int i = 0; i < n; i++) buffer.putInt(frame.ids[i]);
+        if (quantized) {
+            for (int i = 0; i < n; i++) buffer.putShort(quantize(frame.x[i], L));
+            for (int i = 0; i < n; i++) buffer.putShort(quantize(frame.y[i], L));
+            for (int i = 0; i < n; i++) buffer.putFloat(frame.vel[i]);
+            for (int i = 0; i < n; i++) buffer.putShort(quantize(frame.angle[i], 2 * Math.PI));
+        } else {
+            for (int i = 0; i < n; i++) buffer.putFloat(frame.x[i]);
+            for (int i = 0; i < n; i++) buffer.putFloat(frame.y[i]);
+            for (int i = 0; i < n; i++) buffer.putFloat(frame.vel[i]);
+            for (int i = 0; i < n; i++) buffer.putFloat(frame.angle[i]);
+        }
+    }
+
+    private static short quantize(double value, double range) {
+        long q = Math.round(value / range * QUANTUM);
+        return (short) Math.max(0, Math.min(QUANTUM - 1, q));
+    }
+
+    private int frameBytes(int n) {
+        int columnBytes = quantized ? 3 * Short.BYTES + Float.BYTES : 4 * Float.BYTES;
+        return 2 * Integer.BYTES + n * (Integer.BYTES + columnBytes);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("Error al escribir la trayectoria: " + error.getMessage(), error);
+        }
+    }
+
+    /*
+        Espera a que se escriban todos los frames encolados y agrega el índice al final del archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (error == null) {
+                queue.put(POISON);
+            }
+            worker.join();
+            checkError();
+
+            ByteBuffer index = ByteBuffer.allocate(offsets.size() * Long.BYTES + FOOTER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long indexOffset = channel.position();
+            for (long offset : offsets) {
+                index.putLong(offset);
+            }
+            index.putLong(indexOffset).putInt(offsets.size()).putInt(INDEX_MAGIC);
+            index.flip();
+            writeFully(index);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido al cerrar la trayectoria", e);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static class Frame {
+        private final int time;
+        private final int[] ids;
+        private final float[] x;
+        private final float[] y;
+        private final float[] vel;
+        private final float[] angle;
+
+        Frame(int time, int n) {
+            this.time = time;
+            this.ids = new int[n];
+            this.x = new float[n];
+            this.y = new float[n];
+            this.vel = new float[n];
+            this.angle = new float[n];
+        }
+    }
+}
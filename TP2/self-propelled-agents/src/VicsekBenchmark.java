@@ -0,0 +1,270 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Supplier;
+
+/*
+    Benchmarks del paso de Vicsek y de sus partes, para tener una línea base antes de optimizar.
+    Cada caso tiene warmup e iteraciones medidas; por iteración se reporta tiempo, bytes alocados por el thread
+    (com.sun.management.ThreadMXBean) y cantidad/tiempo de GC. El setup de cada iteración no se mide.
+
+    Cada caso corre en una JVM nueva (mismo classpath y mismas opciones de la JVM), así un caso no hereda el perfil
+    del JIT ni el heap de los anteriores.
+
+    Uso: java VicsekBenchmark [filtro] [--no-fork]   (solo corre los casos cuyo nombre contiene el filtro;
+         --no-fork los corre todos en esta JVM, más rápido pero menos confiable)
+ */
+public class VicsekBenchmark {
+
+    private static final int WARMUP = 10;
+    private static final int ITERATIONS = 10;
+    private static final int[] NS = { 400, 10_000, 100_000 };
+    private static final double[] DENSITIES = { 1, 4 };
+
+    // Resultado acumulado para que el JIT no elimine el trabajo medido.
+    private static volatile double sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final String CASE = "--case";
+    private static final String NO_FORK = "--no-fork";
+
+    // Nombre -> setup de cada caso (armar el mapa no corre nada)
+    private final Map<String, Supplier<Runnable>> cases = new LinkedHashMap<>();
+
+    public VicsekBenchmark() {
+        defineCases();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        VicsekBenchmark benchmark = new VicsekBenchmark();
+        int single = arguments.indexOf(CASE);
+        if (single >= 0) {
+            // JVM hija: un solo caso, sin encabezado
+            benchmark.measure(arguments.get(single + 1));
+            return;
+        }
+        boolean fork = !arguments.remove(NO_FORK);
+        benchmark.runAll(arguments.isEmpty() ? "" : arguments.get(0), fork);
+    }
+
+    public void runAll(String filter, boolean fork) throws Exception {
+        System.out.printf("%-45s %14s %14s %8s %10s%n", "benchmark", "ms/op", "MB alloc/op", "gc/op", "gc ms/op");
+        for (String name : cases.keySet()) {
+            if (!name.contains(filter)) {
+                continue;
+            }
+            if (fork) {
+                fork(name);
+            } else {
+                measure(name);
+            }
+        }
+    }
+
+    private void fork(String name) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(VicsekBenchmark.class.getName());
+        command.add(CASE);
+        command.add(name);
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) {
+            throw new Exception("Falló el caso " + name + " (código " + exit + ")");
+        }
+    }
+
+    private void define(String name, Supplier<Runnable> setup) {
+        cases.put(name, setup);
+    }
+
+    private void defineCases() {
+        for (int n : NS) {
+            for (double density : DENSITIES) {
+                int L = Math.max(3, (int) Math.round(Math.sqrt(n / density)));
+                int M = L - 1;
+                String params = "N=%d,rho=%.0f".formatted(n, density);
+
+                define("particles.allocation[" + params + "]", () -> {
+                    List<Particle> source = randomParticles(n, L);
+                    return () -> {
+                        List<Particle> copy = new ArrayList<>(n);
+                        for (Particle p : source) {
+                            copy.add(new Particle(p.getId(), p.getPosX(), p.getPosY(), 0, p.getVel(), p.getAngle()));
+                        }
+                        sink += copy.size();
+                    };
+                });
+
+                define("cim.construction[" + params + "]", () -> {
+                    List<Particle> particles = randomParticles(n, L);
+                    return () -> sink += new CIMImpl(M, n, L, 0, particles).getParticlesList().size();
+                });
+
+                define("cim.interactions.noGhosts[" + params + "]", () -> {
+                    CIMImpl cim = new CIMImpl(M, n, L, 0, randomParticles(n, L));
+                    return () -> sink += interactions(cim, false).size();
+                });
+
+                define("cim.interactions.withGhosts[" + params + "]", () -> {
+                    CIMImpl cim = new CIMImpl(M, n, L, 0, randomParticles(n, L));
+                    return () -> sink += interactions(cim, true).size();
+                });
+
+                define("hashmap.neighbourLookup[" + params + "]", () -> {
+                    List<Particle> particles = randomParticles(n, L);
+                    Map<Integer, List<Particle>> neighbours = interactions(new CIMImpl(M, n, L, 0, particles), true);
+                    return () -> {
+                        int found = 0;
+                        for (Particle p : particles) {
+                            found += neighbours.getOrDefault(p.getId(), List.of()).size();
+                        }
+                        sink += found;
+                    };
+                });
+
+                // Las dos variantes hacen la misma cuenta (promedio de sin/cos y atan2, sin ruido): solo cambia de
+                // dónde salen sin y cos
+                define("angle.trig[" + params + "]", () -> {
+                    List<List<Particle>> neighbourhoods = neighbourhoods(n, L, M);
+                    return () -> {
+                        double sum = 0;
+                        for (List<Particle> neighbours : neighbourhoods) {
+                            double sinSum = 0;
+                            double cosSum = 0;
+                            for (Particle p : neighbours) {
+                                sinSum += Math.sin(p.getAngle());
+                                cosSum += Math.cos(p.getAngle());
+                            }
+                            sum += Math.atan2(sinSum / neighbours.size(), cosSum / neighbours.size());
+                        }
+                        sink += sum;
+                    };
+                });
+
+                define("angle.cached[" + params + "]", () -> {
+                    List<List<Particle>> neighbourhoods = neighbourhoods(n, L, M);
+                    return () -> {
+                        double sum = 0;
+                        for (List<Particle> neighbours : neighbourhoods) {
+                            double sinSum = 0;
+                            double cosSum = 0;
+                            for (Particle p : neighbours) {
+                                sinSum += p.getSin();
+                                cosSum += p.getCos();
+                            }
+                            sum += Math.atan2(sinSum / neighbours.size(), cosSum / neighbours.size());
+                        }
+                        sink += sum;
+                    };
+                });
+
+                define("offLattice.step[" + params + "]", () -> {
+                    OffLattice offLattice = new OffLattice(M, n, L, 1.0, 1L);
+                    return () -> {
+                        try {
+                            sink += offLattice.run(1, 2).size();
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    };
+                });
+
+                define("largeOffLattice.step[" + params + "]", () -> {
+                    try {
+                        LargeOffLattice large = new LargeOffLattice(n, L, 1, 1.0, 1L);
+                        large.setParallel(false);
+                        return () -> sink += large.step();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+        }
+    }
+
+    private void measure(String name) {
+        Supplier<Runnable> setup = cases.get(name);
+        if (setup == null) {
+            throw new IllegalArgumentException("No hay un caso " + name);
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            setup.get().run();
+        }
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long totalGcCount = 0;
+        long totalGcMillis = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Runnable operation = setup.get();
+            long gcCount = gcCount();
+            long gcMillis = gcMillis();
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+
+            operation.run();
+
+            totalNanos += System.nanoTime() - start;
+            totalBytes += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            totalGcCount += gcCount() - gcCount;
+            totalGcMillis += gcMillis() - gcMillis;
+        }
+
+        System.out.printf(Locale.US, "%-45s %14.3f %14.3f %8.2f %10.2f%n", name,
+                totalNanos / 1e6 / ITERATIONS,
+                totalBytes / 1e6 / ITERATIONS,
+                (double) totalGcCount / ITERATIONS,
+                (double) totalGcMillis / ITERATIONS);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static List<Particle> randomParticles(int n, int L) {
+        Random random = new Random(n);
+        List<Particle> particles = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            particles.add(new Particle(i, random.nextDouble() * L, random.nextDouble() * L, 0, 0.03, random.nextDouble() * 2 * Math.PI));
+        }
+        return particles;
+    }
+
+    private static Map<Integer, List<Particle>> interactions(CIMImpl cim, boolean continious) {
+        try {
+            return cim.findInteractions(1, continious);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<List<Particle>> neighbourhoods(int n, int L, int M) {
+        List<Particle> particles = randomParticles(n, L);
+        Map<Integer, List<Particle>> neighbours = interactions(new CIMImpl(M, n, L, 0, particles), true);
+        List<List<Particle>> neighbourhoods = new ArrayList<>(n);
+        for (Particle p : particles) {
+            List<Particle> list = new ArrayList<>(neighbours.getOrDefault(p.getId(), List.of()));
+            list.add(p);
+            neighbourhoods.add(list);
+        }
+        return neighbourhoods;
+    }
+}
@@ -49,6 +49,47 @@ def read_dynamic_file(filename, N):
     return timesteps
 
 
+# Lectura del formato binario de TrajectoryWriter (dynamic.bin)
+def _read_binary_index(file):
+    header = np.frombuffer(file.read(20), dtype='<i4')
+    quantized = (header[4] & 1) != 0
+    file.seek(-16, 2)
+    index_offset, frames, _ = np.frombuffer(file.read(16), dtype=np.dtype([('o', '<i8'), ('f', '<i4'), ('m', '<i4')]))[0].item()
+    file.seek(index_offset)
+    offsets = np.frombuffer(file.read(8 * frames), dtype='<i8')
+    L_bin = float(np.frombuffer(header[3].tobytes(), dtype='<f4')[0])
+    return L_bin, quantized, offsets
+
+
+def read_binary_frame(file, offset, L_bin, quantized):
+    file.seek(offset)
+    t, n = (int(v) for v in np.frombuffer(file.read(8), dtype='<i4'))
+    ids = np.frombuffer(file.read(4 * n), dtype='<i4')
+    if quantized:
+        x = np.frombuffer(file.read(2 * n), dtype='<u2') / 65536.0 * L_bin
+        y = np.frombuffer(file.read(2 * n), dtype='<u2') / 65536.0 * L_bin
+        v = np.frombuffer(file.read(4 * n), dtype='<f4')
+        theta = np.frombuffer(file.read(2 * n), dtype='<u2') / 65536.0 * 2 * np.pi
+    else:
+        x = np.frombuffer(file.read(4 * n), dtype='<f4')
+        y = np.frombuffer(file.read(4 * n), dtype='<f4')
+        v = np.frombuffer(file.read(4 * n), dtype='<f4')
+        theta = np.frombuffer(file.read(4 * n), dtype='<f4')
+    return t, list(zip(ids, x, y, v, theta))
+
+
+def read_binary_dynamic_file(filename):
+    with open(filename, 'rb') as file:
+        L_bin, quantized, offsets = _read_binary_index(file)
+        return [read_binary_frame(file, offset, L_bin, quantized) for offset in offsets]
+
+
+def read_any_dynamic_file(filename, N):
+    if filename.endswith('.bin'):
+        return read_binary_dynamic_file(filename)
+    return read_dynamic_file(filename, N)
+
+
 # Función para convertir ángulo en color usando colormap 'hsv'
 def angle_to_color(theta):
     # Normaliza el ángulo theta al rango [0, 1]
@@ -94,7 +135,7 @@ def update(frame, arrows, timesteps):
 # Función principal para generar la animación
 def animate_particles(static_file, dynamic_file):
     N, L, particles_info = read_static_file(static_file)
-    timesteps = read_dynamic_file(dynamic_file, N)
+    timesteps = read_any_dynamic_file(dynamic_file, N)
 
     fig, ax = plt.subplots()
     ax.set_xlim(0, L)
@@ -113,7 +154,7 @@ def animate_particles(static_file, dynamic_file):
 # Función para graficar un frame específico
 def plot_specific_frame(static_file, dynamic_file, frame_number):
     N, L, particles_info = read_static_file(static_file)
-    timesteps = read_dynamic_file(dynamic_file, N)
+    timesteps = read_any_dynamic_file(dynamic_file, N)
 
     if frame_number >= len(timesteps) or frame_number < 0:
         raise ValueError("El número de frame está fuera de los límites.")
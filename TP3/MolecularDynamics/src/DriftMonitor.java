@@ -0,0 +1,229 @@
+import models.FutureCollision;
+import models.particles.Particle;
+import models.particles.Position;
+import models.particles.StaticParticle;
+import models.particles.Velocity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Vigila el error de redondeo acumulado en corridas largas (Particle.move y las fórmulas de Event.applyCollision)
+    y lo corrige antes de que aparezcan superposiciones y timeToCollide devuelva cualquier cosa.
+
+    En cada choque entre partículas se mide cuánto se aparta la distancia de contacto de sigma (O(1) por evento).
+    Cada checkEvery eventos se revisa todo (O(N) con la grilla): energía cinética total contra la inicial, la menor
+    separación entre pares y, en la caja periódica sin obstáculos fijos, el momento total. Si la energía se corrió
+    más de energyTolerance (relativo), si hay pares superpuestos más de overlapTolerance (relativo a sigma) o si un
+    contacto se midió fuera de tolerancia, se repara:
+      - los pares superpuestos se separan sobre la línea de centros hasta sigma * (1 + overlapTolerance), repartiendo
+        el desplazamiento según las masas (un obstáculo fijo no se mueve), y se repite mientras queden superpuestos
+        (si no alcanza, IllegalStateException: seguir con pares superpuestos daría choques sin sentido);
+      - se quita la deriva del momento (solo si se conserva) y se reescalan todas las velocidades para volver a la
+        energía inicial (las direcciones no cambian);
+      - el motor descarta la cola y vuelve a predecir todo (MolecularDynamicWithFixObstacle.rebuild).
+ */
+public class DriftMonitor {
+
+    // Separar un par puede superponer a uno de los dos con un tercero (en zonas densas converge de a poco)
+    private static final int MAX_SNAP_PASSES = 200;
+
+    private final MolecularDynamicWithFixObstacle engine;
+    private final long checkEvery;
+    private final double energyTolerance;
+    private final double overlapTolerance;
+    private final boolean momentumConserved;
+
+    private final double initialEnergy;
+    private final double initialMomentumX;
+    private final double initialMomentumY;
+
+    private long events = 0;
+    private double worstContactError = 0;
+    private boolean contactOutOfTolerance = false;
+
+    private long checks = 0;
+    private long repairs = 0;
+    private long snappedPairs = 0;
+    private double worstEnergyDrift = 0;
+    private double minimumGap = Double.POSITIVE_INFINITY;
+
+    public DriftMonitor(MolecularDynamicWithFixObstacle engine, long checkEvery, double energyTolerance, double overlapTolerance) {
+        this.engine = engine;
+        this.checkEvery = checkEvery;
+        this.energyTolerance = energyTolerance;
+        this.overlapTolerance = overlapTolerance;
+
+        boolean anyStatic = false;
+        for (Particle p : engine.getParticles()) {
+            anyStatic |= p instanceof StaticParticle;
+        }
+        this.momentumConserved = engine.isPeriodic() && !anyStatic;
+        this.initialEnergy = kineticEnergy();
+        double[] momentum = momentum();
+        this.initialMomentumX = momentum[0];
+        this.initialMomentumY = momentum[1];
+    }
+
+    /*
+        Se llama después de cada evento que devuelve el motor (ya aplicado).
+     */
+    public void onEvent(FutureCollision event) {
+        if (event.getObstacle() instanceof Particle other) {
+            Particle p = event.getParticle();
+            // Las dos están en event.getTc() (el motor las movió para el choque)
+            double dx = engine.minimumImage(other.getPosition().getX() - p.getPosition().getX());
+            double dy = engine.minimumImage(other.getPosition().getY() - p.getPosition().getY());
+            double error = Math.abs(Math.sqrt(dx * dx + dy * dy) / (p.getRadius() + other.getRadius()) - 1);
+            worstContactError = Math.max(worstContactError, error);
+            contactOutOfTolerance |= error > overlapTolerance;
+        }
+        if (++events % checkEvery == 0) {
+            check();
+        }
+    }
+
+    /*
+        Revisión completa (y reparación si hace falta). Devuelve true si se reparó algo.
+     */
+    public boolean check() {
+        checks++;
+        List<Particle[]> overlapping = new ArrayList<>();
+        minimumGap = Math.min(minimumGap, engine.scanOverlaps(overlapTolerance, overlapping));
+        double drift = Math.abs(kineticEnergy() / initialEnergy - 1);
+        worstEnergyDrift = Math.max(worstEnergyDrift, drift);
+        if (overlapping.isEmpty() && drift <= energyTolerance && !contactOutOfTolerance) {
+            return false;
+        }
+
+        for (int pass = 0; pass < MAX_SNAP_PASSES && !overlapping.isEmpty(); pass++) {
+            for (Particle[] pair : overlapping) {
+                snap(pair[0], pair[1]);
+            }
+            snappedPairs += overlapping.size();
+            overlapping.clear();
+            engine.scanOverlaps(overlapTolerance, overlapping);
+        }
+        if (!overlapping.isEmpty()) {
+            throw new IllegalStateException("Quedan %d pares superpuestos después de %d pasadas".formatted(overlapping.size(), MAX_SNAP_PASSES));
+        }
+        renormalise();
+        engine.rebuild();
+        contactOutOfTolerance = false;
+        repairs++;
+        return true;
+    }
+
+    private void snap(Particle p, Particle q) {
+        double dx = engine.minimumImage(q.getPosition().getX() - p.getPosition().getX());
+        double dy = engine.minimumImage(q.getPosition().getY() - p.getPosition().getY());
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double sigma = p.getRadius() + q.getRadius();
+        double nx, ny;
+        if (distance > 0) {
+            nx = dx / distance;
+            ny = dy / distance;
+        } else {
+            // Centros coincidentes: cualquier dirección sirve
+            nx = 1;
+            ny = 0;
+        }
+        double push = sigma * (1 + overlapTolerance) - distance;
+        // Cuánto se mueve cada una (inversamente proporcional a la masa; el obstáculo fijo no se mueve)
+        double shareP = q instanceof StaticParticle ? 1 : q.getMass() / (p.getMass() + q.getMass());
+        place(p, p.getPosition().getX() - nx * push * shareP, p.getPosition().getY() - ny * push * shareP);
+        if (!(q instanceof StaticParticle)) {
+            double shareQ = 1 - shareP;
+            place(q, q.getPosition().getX() + nx * push * shareQ, q.getPosition().getY() + ny * push * shareQ);
+        }
+    }
+
+    private void place(Particle p, double x, double y) {
+        double l = engine.getL();
+        if (engine.isPeriodic()) {
+            x -= l * Math.floor(x / l);
+            y -= l * Math.floor(y / l);
+        } else {
+            double r = p.getRadius();
+            x = Math.max(r, Math.min(l - r, x));
+            y = Math.max(r, Math.min(l - r, y));
+        }
+        p.setPosition(new Position(x, y));
+        engine.relocate(p);
+    }
+
+    private void renormalise() {
+        double driftVx = 0;
+        double driftVy = 0;
+        if (momentumConserved) {
+            double[] momentum = momentum();
+            double mass = 0;
+            for (Particle p : engine.getParticles()) {
+                mass += p.getMass();
+            }
+            driftVx = (momentum[0] - initialMomentumX) / mass;
+            driftVy = (momentum[1] - initialMomentumY) / mass;
+        }
+        for (Particle p : engine.getParticles()) {
+            if (p instanceof StaticParticle) continue;
+            p.setVelocity(new Velocity(p.getVelocity().getX() - driftVx, p.getVelocity().getY() - driftVy));
+        }
+        double energy = kineticEnergy();
+        if (energy > 0) {
+            double scale = Math.sqrt(initialEnergy / energy);
+            for (Particle p : engine.getParticles()) {
+                if (p instanceof StaticParticle) continue;
+                p.setVelocity(new Velocity(p.getVelocity().getX() * scale, p.getVelocity().getY() * scale));
+            }
+        }
+    }
+
+    private double kineticEnergy() {
+        double energy = 0;
+        for (Particle p : engine.getParticles()) {
+            if (p instanceof StaticParticle) continue;
+            double vx = p.getVelocity().getX();
+            double vy = p.getVelocity().getY();
+            energy += 0.5 * p.getMass() * (vx * vx + vy * vy);
+        }
+        return energy;
+    }
+
+    private double[] momentum() {
+        double px = 0;
+        double py = 0;
+        for (Particle p : engine.getParticles()) {
+            if (p instanceof StaticParticle) continue;
+            px += p.getMass() * p.getVelocity().getX();
+            py += p.getMass() * p.getVelocity().getY();
+        }
+        return new double[]{ px, py };
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    public long getRepairs() {
+        return repairs;
+    }
+
+    public long getSnappedPairs() {
+        return snappedPairs;
+    }
+
+    public double getWorstEnergyDrift() {
+        return worstEnergyDrift;
+    }
+
+    /*
+        Menor separación relativa (distancia / sigma - 1) vista en las revisiones; negativa = hubo superposición.
+     */
+    public double getMinimumGap() {
+        return minimumGap;
+    }
+
+    public double getWorstContactError() {
+        return worstContactError;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+    Contadores de rendimiento del motor de eventos. Son longs sueltos que el motor incrementa en el camino de cada
+    evento (sin locks ni objetos por evento), así se pueden dejar siempre prendidos. Medir tiempos por fase cuesta
+    dos System.nanoTime por fase y evento, por eso es opcional (setTiming).
+
+    Los contadores son acumulados desde que se creó el motor; para valores por intervalo se resta una copia anterior
+    (copy / since), que es lo que hace MetricsSampler.
+ */
+public class EngineMetrics {
+
+    // Colisiones procesadas (las que devuelve advance) y cruces de celda internos
+    long collisions;
+    long crossings;
+    // Eventos sacados de la cola y cuántos de esos estaban invalidados
+    long popped;
+    long stale;
+    // Predicciones (una por partícula que se vuelve a predecir) y candidatos probados en total
+    long predictions;
+    long candidates;
+    // Tiempo por fase en nanosegundos (solo con timing)
+    long predictionNanos;
+    long collisionNanos;
+    long outputNanos;
+
+    private boolean timing = false;
+
+    public boolean isTiming() {
+        return timing;
+    }
+
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    /*
+        Para que quien escribe la salida (Sampler, observables) cargue su tiempo en la misma cuenta.
+     */
+    public void addOutputNanos(long nanos) {
+        outputNanos += nanos;
+    }
+
+    public EngineMetrics copy() {
+        EngineMetrics copy = new EngineMetrics();
+        copy.collisions = collisions;
+        copy.crossings = crossings;
+        copy.popped = popped;
+        copy.stale = stale;
+        copy.predictions = predictions;
+        copy.candidates = candidates;
+        copy.predictionNanos = predictionNanos;
+        copy.collisionNanos = collisionNanos;
+        copy.outputNanos = outputNanos;
+        copy.timing = timing;
+        return copy;
+    }
+
+    /*
+        Diferencia con una copia anterior (los contadores del intervalo).
+     */
+    public EngineMetrics since(EngineMetrics previous) {
+        EngineMetrics delta = new EngineMetrics();
+        delta.collisions = collisions - previous.collisions;
+        delta.crossings = crossings - previous.crossings;
+        delta.popped = popped - previous.popped;
+        delta.stale = stale - previous.stale;
+        delta.predictions = predictions - previous.predictions;
+        delta.candidates = candidates - previous.candidates;
+        delta.predictionNanos = predictionNanos - previous.predictionNanos;
+        delta.collisionNanos = collisionNanos - previous.collisionNanos;
+        delta.outputNanos = outputNanos - previous.outputNanos;
+        delta.timing = timing;
+        return delta;
+    }
+
+    public long getCollisions() {
+        return collisions;
+    }
+
+    public long getCrossings() {
+        return crossings;
+    }
+
+    /*
+        Fracción de los eventos sacados de la cola que ya estaban invalidados.
+     */
+    public double getStaleFraction() {
+        return popped == 0 ? 0 : (double) stale / popped;
+    }
+
+    public double getCandidatesPerPrediction() {
+        return predictions == 0 ? 0 : (double) candidates / predictions;
+    }
+
+    public long getPredictions() {
+        return predictions;
+    }
+
+    public double getPredictionSeconds() {
+        return predictionNanos / 1e9;
+    }
+
+    public double getCollisionSeconds() {
+        return collisionNanos / 1e9;
+    }
+
+    public double getOutputSeconds() {
+        return outputNanos / 1e9;
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/*
+    Corre muchas realizaciones independientes de MolecularDynamicSystem por cada punto (N, velocidad) en un pool
+    de threads. Cada realización tiene su propia seed (baseSeed, punto y número de realización mezclados), así el ensemble es
+    reproducible sin importar en qué orden terminen los threads.
+
+    Los observables de cada realización (MolecularDynamicSystem.measure) se agregan al terminar en promedios y
+    errores estándar con Welford, sin guardar los valores individuales, y al final se escribe un único resumen.
+ */
+public class EnsembleRunner {
+
+    public record Point(int n, double velocity) {
+        @Override
+        public String toString() {
+            return "N=%d,v=%s".formatted(n, velocity);
+        }
+    }
+
+    /*
+        Media y varianza online (Welford).
+     */
+    private static final class Statistic {
+        private long count = 0;
+        private double mean = 0;
+        private double m2 = 0;
+
+        void add(double value) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        double standardError() {
+            return count < 2 ? Double.NaN : Math.sqrt(m2 / (count - 1) / count);
+        }
+    }
+
+    private final double l;
+    private final double mass;
+    private final double radius;
+    private final double staticRadius;
+    private final double staticMass;
+    private final boolean movingObstacle;
+    private final int threads;
+
+    public EnsembleRunner(double l, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle, int threads) {
+        this.l = l;
+        this.mass = mass;
+        this.radius = radius;
+        this.staticRadius = staticRadius;
+        this.staticMass = staticMass;
+        this.movingObstacle = movingObstacle;
+        this.threads = threads;
+    }
+
+    public EnsembleRunner(double l, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle) {
+        this(l, mass, radius, staticRadius, staticMass, movingObstacle, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+        stop es un Supplier porque cada realización necesita su propia StopCondition (algunas tienen estado).
+     */
+    public void run(List<Point> points, int realisations, long baseSeed, Supplier<StopCondition> stop, double sampleDt, Path summaryPath) throws Exception {
+        Map<Point, Map<String, Statistic>> statistics = new LinkedHashMap<>();
+        for (Point point : points) {
+            statistics.put(point, new LinkedHashMap<>());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Map<String, Double>> completion = new ExecutorCompletionService<>(pool);
+        Map<Future<Map<String, Double>>, Point> pointOf = new HashMap<>();
+        try {
+            for (int p = 0; p < points.size(); p++) {
+                Point point = points.get(p);
+                for (int r = 0; r < realisations; r++) {
+                    long seed = seed(baseSeed, p, r);
+                    pointOf.put(completion.submit(() -> new MolecularDynamicSystem(point.n(), l, point.velocity(), mass, radius,
+                            staticRadius, staticMass, movingObstacle, seed).measure(stop.get(), sampleDt)), point);
+                }
+            }
+            System.out.printf("Ensemble: %d puntos x %d realizaciones, %d threads%n", points.size(), realisations, threads);
+
+            // Se agregan a medida que terminan, solo desde este thread
+            int failed = 0;
+            for (int done = 0; done < pointOf.size(); done++) {
+                Future<Map<String, Double>> future = completion.take();
+                try {
+                    Map<String, Statistic> stats = statistics.get(pointOf.get(future));
+                    for (Map.Entry<String, Double> entry : future.get().entrySet()) {
+                        stats.computeIfAbsent(entry.getKey(), key -> new Statistic()).add(entry.getValue());
+                    }
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println("Error en " + pointOf.get(future) + ": " + e.getCause().getMessage());
+                }
+            }
+            if (failed > 0) {
+                System.err.println("Fallaron " + failed + " realizaciones, no se incluyen en el resumen.");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        save(statistics, summaryPath);
+    }
+
+    /*
+        Seed de la realización r del punto p. Se mezcla con SplitMix64 en vez de usar baseSeed + índice: java.util.Random
+        con seeds consecutivas da primeros nextDouble casi iguales (las realizaciones empezarían parecidas).
+     */
+    static long seed(long baseSeed, int point, int realisation) {
+        return mix(mix(mix(baseSeed) + point) + realisation);
+    }
+
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private void save(Map<Point, Map<String, Statistic>> statistics, Path summaryPath) throws IOException {
+        Files.createDirectories(summaryPath.toAbsolutePath().getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(summaryPath)) {
+            writer.write("n\tvelocity\tobservable\tmean\tstderr\tcount\n");
+            for (Map.Entry<Point, Map<String, Statistic>> point : statistics.entrySet()) {
+                for (Map.Entry<String, Statistic> entry : point.getValue().entrySet()) {
+                    Statistic s = entry.getValue();
+                    writer.write(String.format(Locale.US, "%d\t%s\t%s\t%.9e\t%.9e\t%d\n",
+                            point.getKey().n(), point.getKey().velocity(), entry.getKey(), s.mean, s.standardError(), s.count));
+                }
+            }
+        }
+    }
+}
@@ -14,7 +14,7 @@ import java.util.*;
 public class Main {
 
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         double L = 0.1;
         double staticRadius = 0.005;
         int N = 100;
@@ -23,8 +23,37 @@ public class Main {
         double mass = 1;
         double staticMass = 1;
 
+        // java Main ensemble [realizaciones]: promedios de muchas realizaciones en lugar de un solo run con salida
+        if (args.length > 0 && args[0].equals("ensemble")) {
+            int realisations = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+            List<EnsembleRunner.Point> points = new ArrayList<>();
+            for (int n : new int[]{ 100, 200, 300 }) {
+                for (double v : new double[]{ 1, 3, 6, 10 }) {
+                    points.add(new EnsembleRunner.Point(n, v));
+                }
+            }
+            new EnsembleRunner(L, mass, radius, staticRadius, staticMass, false)
+                    .run(points, realisations, 1L, () -> StopCondition.simulatedTime(2), 0.001,
+                            Paths.get("python", "outputs", "ensemble", "summary.tsv"));
+            return;
+        }
+
+        // java Main parallel [N] [franjas]: motor por franjas en un sistema grande, solo rendimiento
+        if (args.length > 0 && args[0].equals("parallel")) {
+            int n = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+            int strips = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            // Misma fracción de empaquetamiento que el sistema de N partículas
+            double side = L * Math.sqrt((double) n / N);
+            new MolecularDynamicSystem(n, side, velocity, mass, radius, staticRadius, staticMass).parallelSolution(1, strips);
+            return;
+        }
+
         MolecularDynamicSystem molecularDynamic = new MolecularDynamicSystem(N, L, velocity, mass, radius, staticRadius, staticMass);
-        molecularDynamic.fixedSolution(120);
+        // java Main periodic: caja periódica en lugar de paredes
+        molecularDynamic.setPeriodic(args.length > 0 && args[0].equals("periodic"));
+        // --timing: tiempo por fase en metrics.tsv (agrega varios System.nanoTime por evento)
+        molecularDynamic.setPhaseTiming(Arrays.asList(args).contains("--timing"));
+        molecularDynamic.fixedSolution(StopCondition.simulatedTime(10), 0.001);
 
     }
 
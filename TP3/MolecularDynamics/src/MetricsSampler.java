@@ -0,0 +1,76 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+    Escribe los contadores del motor (EngineMetrics) cada interval segundos de reloj, como valores del intervalo:
+    eventos por segundo, tamaño de la cola, fracción de eventos invalidados, candidatos por predicción y el tiempo
+    de cada fase (cero si el timing de EngineMetrics está apagado). Se llama después de cada evento; el reloj se consulta solo cada CHECK_EVERY llamadas, así que el
+    costo por evento es un incremento y una comparación.
+ */
+public class MetricsSampler implements Closeable {
+
+    private static final int CHECK_EVERY = 1024;
+
+    private final MolecularDynamicWithFixObstacle engine;
+    private final long intervalNanos;
+    private final BufferedWriter writer;
+    private final long start;
+
+    private EngineMetrics previous;
+    private long previousNanos;
+    private double previousTime;
+    private int calls = 0;
+
+    public MetricsSampler(MolecularDynamicWithFixObstacle engine, double intervalSeconds, Path filePath) throws IOException {
+        this.engine = engine;
+        this.intervalNanos = (long) (intervalSeconds * 1e9);
+        this.writer = Files.newBufferedWriter(filePath);
+        this.writer.write("wall_s\tsim_time\tcollisions\tevents_per_s\tqueue\tstale_fraction\tcandidates_per_prediction\tprediction_s\tcollision_s\toutput_s\n");
+        this.start = System.nanoTime();
+        this.previous = engine.getMetrics().copy();
+        this.previousNanos = start;
+        this.previousTime = engine.getTime();
+    }
+
+    public void onEvent() throws IOException {
+        if (++calls < CHECK_EVERY) {
+            return;
+        }
+        calls = 0;
+        long now = System.nanoTime();
+        if (now - previousNanos >= intervalNanos) {
+            sample(now);
+        }
+    }
+
+    private void sample(long now) throws IOException {
+        EngineMetrics current = engine.getMetrics().copy();
+        EngineMetrics delta = current.since(previous);
+        double seconds = (now - previousNanos) / 1e9;
+        writer.write(String.format(Locale.US, "%.3f\t%.6f\t%d\t%.0f\t%d\t%.4f\t%.2f\t%.4f\t%.4f\t%.4f\n",
+                (now - start) / 1e9, engine.getTime(), delta.getCollisions(), delta.getCollisions() / seconds,
+                engine.getQueueSize(), delta.getStaleFraction(), delta.getCandidatesPerPrediction(),
+                delta.getPredictionSeconds(), delta.getCollisionSeconds(), delta.getOutputSeconds()));
+        previous = current;
+        previousNanos = now;
+        previousTime = engine.getTime();
+    }
+
+    /*
+        Escribe el último intervalo (si avanzó la simulación) y cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (engine.getTime() > previousTime) {
+                sample(System.nanoTime());
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
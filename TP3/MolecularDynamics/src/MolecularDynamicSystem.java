@@ -25,25 +25,86 @@ public class MolecularDynamicSystem {
     private final double staticRadius;
     private final double staticMass;
     private final int n;
+    // Si es true la partícula grande es una partícula común de masa staticMass (se mueve), si no es una StaticParticle
+    private final boolean movingObstacle;
+    // Cantidad de partículas grandes (ids 0 .. obstacles - 1): con una va en el centro, con más se reparten al azar (medio poroso)
+    private final int obstacles;
+    private final Random random;
+    // Caja periódica en lugar de paredes (las paredes quedan en el estado pero el motor las ignora)
+    private boolean periodic = false;
+    // Cada cuántos segundos de reloj se escribe metrics.tsv en fixedSolution (<= 0: no se escribe)
+    private double metricsInterval = 1;
+    // Tiempo por fase (predicción, colisiones, salida): varios System.nanoTime por evento, por eso apagado por defecto
+    private boolean phaseTiming = false;
+    // Cada cuántos eventos DriftMonitor revisa energía y superposiciones (0: no se revisa). Por defecto 100 por partícula.
+    private long driftCheckEvery;
+    private static final double ENERGY_TOLERANCE = 1e-10;
+    private static final double OVERLAP_TOLERANCE = 1e-9;
+    private DriftMonitor drift;
 
     // Horizontal, Vertical
     private final Map<WallType, Wall> walls = new HashMap<>();
-    private final Map<Double, Double> wallsPressure = new HashMap<>();
-    private final Map<Double, Double> staticParticlePressure = new HashMap<>();
+    // Cantidad de bins de presión que se guardan (los más viejos se pisan)
+    private static final int PRESSURE_BINS = 1 << 16;
+    private PressureAccumulator pressure;
+
+    // MSD de la partícula grande y de (hasta MSD_TRACKED) partículas chicas
+    private static final int MSD_TRACKED = 100;
+    private MsdTracker obstacleMsd;
+    private MsdTracker particlesMsd;
 
     private final State initial;
+    private double packingFraction;
+    // Cuánto tardó armar el estado inicial (se informa en los runs sueltos, no en cada realización de un ensemble)
+    private double placementMillis;
 
     public MolecularDynamicSystem(int n, double l, double velocity, double mass, double radius, double staticRadius, double staticMass) {
+        this(n, l, velocity, mass, radius, staticRadius, staticMass, false);
+    }
+
+    public MolecularDynamicSystem(int n, double l, double velocity, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle) {
+        this(n, l, velocity, mass, radius, staticRadius, staticMass, movingObstacle, 1, new Random());
+    }
+
+    /*
+        Con la misma seed se obtiene el mismo estado inicial (para realizaciones independientes y reproducibles).
+     */
+    public MolecularDynamicSystem(int n, double l, double velocity, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle, long seed) {
+        this(n, l, velocity, mass, radius, staticRadius, staticMass, movingObstacle, 1, new Random(seed));
+    }
+
+    /*
+        n partículas en total, de las cuales obstacles son obstáculos de radio staticRadius (y n - obstacles chicas).
+     */
+    public MolecularDynamicSystem(int n, double l, double velocity, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle, int obstacles, long seed) {
+        this(n, l, velocity, mass, radius, staticRadius, staticMass, movingObstacle, obstacles, new Random(seed));
+    }
+
+    private MolecularDynamicSystem(int n, double l, double velocity, double mass, double radius, double staticRadius, double staticMass, boolean movingObstacle, int obstacles, Random random) {
+        if (obstacles < 1 || obstacles >= n) {
+            throw new IllegalArgumentException("Tiene que haber entre 1 y n - 1 obstáculos: " + obstacles);
+        }
         this.l = l;
+        this.movingObstacle = movingObstacle;
+        this.obstacles = obstacles;
+        this.random = random;
         this.velocity = velocity;
         this.radius = radius;
         this.mass = mass;
         this.staticRadius = staticRadius;
         this.staticMass = staticMass;
         this.n = n;
+        this.driftCheckEvery = 100L * n;
 
         createWalls(l);
+        long start = System.nanoTime();
         initial = initialState();
+        placementMillis = (System.nanoTime() - start) / 1e6;
+    }
+
+    private void printInitialState() {
+        System.out.printf(Locale.US, "Estado inicial: N = %d, fracción de empaquetamiento %.4f (%.1f ms)%n",
+                n, packingFraction, placementMillis);
     }
 
     private void createWalls(double L) {
@@ -96,76 +157,260 @@ public class MolecularDynamicSystem {
     }
 
     private State initialState() {
-        Random random = new Random();
         Set<Particle> particleSet = new HashSet<>();
 
-        Particle staticParticle = new StaticParticle(0, new Position(l/2.0, l/2.0), staticRadius, mass);
-        particleSet.add(staticParticle);
-
-        while (particleSet.size() < n) {
-            // Posición x aleatoria dentro del área L x L
-            double x = radius + random.nextDouble() * (l - 2 * radius);
-            double y = radius + random.nextDouble() * (l - 2 * radius);
+        // Superposición chequeada con grilla; para fracciones altas se usa red + desorden (ver DiskPlacer)
+        DiskPlacer placer = new DiskPlacer(l, l, random);
+        DiskPlacer obstaclePlacer = null;
+        if (obstacles > 1) {
+            obstaclePlacer = new DiskPlacer(l, l, random);
+            obstaclePlacer.place(obstacles, staticRadius);
+        }
+        for (int i = 0; i < obstacles; i++) {
+            double x = obstaclePlacer == null ? l/2.0 : obstaclePlacer.getX(i);
+            double y = obstaclePlacer == null ? l/2.0 : obstaclePlacer.getY(i);
+            Particle staticParticle = movingObstacle
+                    ? new Particle(i, new Position(x, y), new Velocity(0, 0), staticRadius, staticMass)
+                    : new StaticParticle(i, new Position(x, y), staticRadius, mass);
+            particleSet.add(staticParticle);
+            placer.addObstacle(x, y, staticRadius);
+        }
 
+        placer.place(n - obstacles, radius);
+        for (int i = 0; i < n - obstacles; i++) {
             double angle = random.nextDouble() * (2 * Math.PI);
             double vx = Math.cos(angle) * velocity;
             double vy = Math.sin(angle) * velocity;
 
-            Particle newParticle = new Particle(particleSet.size(), new Position(x, y), new Velocity(vx, vy), radius, mass);
-
-            boolean match = false;
-            for (Particle particle : particleSet) {
-                match = newParticle.isInside(particle);
-                if (match)
-                    break;
-            }
-            if (!match)
-                particleSet.add(newParticle);
+            particleSet.add(new Particle(obstacles + i, new Position(placer.getX(i), placer.getY(i)), new Velocity(vx, vy), radius, mass));
         }
+        packingFraction = placer.getPackingFraction();
         return new State(0, walls, particleSet);
     }
 
-    public void fixedSolution(int runSeconds) {
+    public void fixedSolution(StopCondition stop, double sampleDt) {
+        fixedSolution(stop, sampleDt, false);
+    }
+
+    /*
+        Guarda una foto del sistema cada sampleDt de tiempo simulado (ver Sampler); con logEvents además se escribe
+        events.csv con cada colisión.
+     */
+    public void fixedSolution(StopCondition stop, double sampleDt, boolean logEvents) {
+        fixedSolution(stop, sampleDt, logEvents, SnapshotWriter.Format.CSV);
+    }
+
+    public void fixedSolution(StopCondition stop, double sampleDt, boolean logEvents, SnapshotWriter.Format format) {
         String directory = String.format(Locale.US, "fixed_solution");
+        printInitialState();
 
         Path staticPath = getFilePath(directory, "static.csv");
         saveStatic(staticPath);
 
-        Path filepath = getFilePath(directory, "particles.csv");
-
-        Iterator<State> iterator = new MolecularDynamicWithFixObstacle(velocity, mass, radius, staticRadius, initial);
-        runSolution(iterator, filepath, runSeconds);
+        Path filepath = getFilePath(directory, format == SnapshotWriter.Format.CSV ? "particles.csv" : "particles.bin");
+        Path eventsPath = logEvents ? getFilePath(directory, "events.csv") : null;
+
+        MolecularDynamicWithFixObstacle engine = newEngine();
+        startObservables(sampleDt);
+        engine.getMetrics().setTiming(phaseTiming);
+        Path metricsPath = metricsInterval > 0 ? getFilePath(directory, "metrics.tsv") : null;
+        try (Sampler sampler = new Sampler(filepath, n, sampleDt, eventsPath, format);
+             MetricsSampler metricsSampler = metricsPath == null ? null : new MetricsSampler(engine, metricsInterval, metricsPath)) {
+            long start = System.nanoTime();
+            long events = runSolution(engine, sampler, metricsSampler, stop);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.US, "Eventos: %d, tiempo simulado: %.6f s, tiempo real: %.3f s, eventos/s: %.0f%n",
+                    events, engine.getTime(), seconds, events / seconds);
+            EngineMetrics metrics = engine.getMetrics();
+            System.out.printf(Locale.US, "Eventos invalidados: %.1f%%, candidatos por predicción: %.1f%n",
+                    100 * metrics.getStaleFraction(), metrics.getCandidatesPerPrediction());
+            if (metrics.isTiming()) {
+                System.out.printf(Locale.US, "Predicción %.3f s, colisiones %.3f s, salida %.3f s%n",
+                        metrics.getPredictionSeconds(), metrics.getCollisionSeconds(), metrics.getOutputSeconds());
+            }
+            if (drift != null) {
+                System.out.printf(Locale.US, "Deriva: %d revisiones, %d reparaciones (%d pares separados), energía %.2e, separación mínima %.2e%n",
+                        drift.getChecks(), drift.getRepairs(), drift.getSnappedPairs(), drift.getWorstEnergyDrift(), drift.getMinimumGap());
+            }
+            saveMsd(directory, engine.getTime());
+        } catch (IOException e) {
+            System.out.println("Error al escribir un estado: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
-    private void runSolution(Iterator<State> iterator, Path filepath, int runSeconds) {
-        LinkedList<State> statesToSave = new LinkedList<>();
+    /*
+        Corre hasta simulatedTime con el motor por franjas (ver ParallelMolecularDynamic) y devuelve el estado final.
+        No hay muestras ni observables: es para sistemas grandes donde interesa el estado o el rendimiento.
+     */
+    public State parallelSolution(double simulatedTime, int strips) throws InterruptedException {
+        if (periodic) {
+            throw new IllegalStateException("El motor por franjas no soporta la caja periódica");
+        }
+        printInitialState();
+        try (ParallelMolecularDynamic engine = new ParallelMolecularDynamic(initial, strips)) {
+            long start = System.nanoTime();
+            engine.runUntil(simulatedTime);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.US, "Franjas: %d, eventos: %d, tiempo real: %.3f s, eventos/s: %.0f, ventanas: %d (%d rollbacks, %d seriales)%n",
+                    engine.getStrips(), engine.getEvents(), seconds, engine.getEvents() / seconds,
+                    engine.getWindows(), engine.getRollbacks(), engine.getSerialWindows());
+            return engine.snapshot();
+        }
+    }
 
-        int stateCounter = 0;
-        int saveFrequency = 1; // Guarda cada 100 estados
-        int maxStatesToSave = 1; // Máximo número de estados a guardar antes de escribir en archivo
+    /*
+        Corre sin escribir archivos y devuelve los observables del run (para promediar realizaciones, ver EnsembleRunner).
+     */
+    public Map<String, Double> measure(StopCondition stop, double sampleDt) {
+        MolecularDynamicWithFixObstacle engine = newEngine();
+        startObservables(sampleDt);
+        long start = System.nanoTime();
+        long events;
+        try {
+            events = runSolution(engine, null, null, stop);
+        } catch (IOException e) {
+            // Sin Sampler no se escribe nada
+            throw new IllegalStateException(e);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        double time = engine.getTime();
+        Map<String, Double> observables = new LinkedHashMap<>();
+        observables.put("events_per_second", events / seconds);
+        observables.put("collision_rate", events / time);
+        observables.put("stale_fraction", engine.getMetrics().getStaleFraction());
+        observables.put("drift_repairs", drift == null ? 0.0 : drift.getRepairs());
+        observables.put("candidates_per_prediction", engine.getMetrics().getCandidatesPerPrediction());
+        observables.put("wall_pressure", pressure.averagePressure(4 * l, PressureAccumulator.walls()));
+        observables.put("static_pressure", pressure.averagePressure(obstacles * 2 * Math.PI * staticRadius, PressureAccumulator.STATIC));
+        observables.put("obstacle_d", obstacleMsd.diffusionCoefficient(10 * sampleDt, time / 10));
+        observables.put("particles_d", particlesMsd.diffusionCoefficient(10 * sampleDt, time / 10));
+        return observables;
+    }
 
-        long startTime = System.nanoTime();
-        long endTime = startTime + (runSeconds * 1_000_000_000L); // Convertir segundos a nanosegundos
+    private MolecularDynamicWithFixObstacle newEngine() {
+        return new MolecularDynamicWithFixObstacle(velocity, mass, radius, staticRadius, initial, true, periodic);
+    }
 
-        while (System.nanoTime() < endTime) {
-            State currentState = iterator.next();
-            stateCounter++;
+    private void startObservables(double sampleDt) {
+        // La presión se acumula con la misma resolución temporal que las muestras
+        pressure = new PressureAccumulator(sampleDt, PRESSURE_BINS, obstacles, periodic ? l : 0);
+        double period = periodic ? l : 0;
+        obstacleMsd = new MsdTracker(sampleDt, period, new int[]{ 0 });
+        int[] tracked = new int[Math.min(n - obstacles, MSD_TRACKED)];
+        for (int i = 0; i < tracked.length; i++) {
+            tracked[i] = obstacles + i;
+        }
+        particlesMsd = new MsdTracker(sampleDt, period, tracked);
+    }
 
-            if (stateCounter % saveFrequency == 0) {
-                statesToSave.add(currentState);
+    /*
+        Corre hasta que se cumple stop y devuelve la cantidad de eventos. sampler y metricsSampler pueden ser null.
+        Con timing prendido, lo que no es advance (muestras, observables, log) se cuenta como tiempo de salida.
+     */
+    private long runSolution(MolecularDynamicWithFixObstacle engine, Sampler sampler, MetricsSampler metricsSampler, StopCondition stop) throws IOException {
+        long events = 0;
+        EngineMetrics metrics = engine.getMetrics();
+        boolean timing = metrics.isTiming();
+        drift = driftCheckEvery > 0 ? new DriftMonitor(engine, driftCheckEvery, ENERGY_TOLERANCE, OVERLAP_TOLERANCE) : null;
+
+        // La condición se mira antes de cada evento, así una que ya se cumple al empezar no procesa ninguno
+        while (!stop.shouldStop(engine, events)) {
+            long start = timing ? System.nanoTime() : 0;
+            // Las muestras anteriores al próximo evento se interpolan con las velocidades de antes del choque
+            double nextEvent = engine.nextEventTime();
+            if (Double.isInfinite(nextEvent)) {
+                // Cola vacía: no hay más eventos y el estado ya no cambia (muestrear hasta +inf no terminaría nunca)
+                System.err.printf(Locale.US, "No quedan eventos en t = %.6f, se corta la simulación%n", engine.getTime());
+                break;
             }
-
-            if (statesToSave.size() >= maxStatesToSave) {
-                save(statesToSave, filepath);
-                statesToSave.clear();
+            if (sampler != null) {
+                sampler.sampleUntil(engine, nextEvent);
+            }
+            obstacleMsd.sampleUntil(engine, nextEvent);
+            particlesMsd.sampleUntil(engine, nextEvent);
+            long sampled = timing ? System.nanoTime() : 0;
+            FutureCollision event = engine.advance();
+            long advanced = timing ? System.nanoTime() : 0;
+            if (sampler != null) {
+                sampler.logEvent(event);
+            }
+            pressure.record(event);
+            if (drift != null) {
+                drift.onEvent(event);
+            }
+            events++;
+            if (timing) {
+                metrics.addOutputNanos(sampled - start + System.nanoTime() - advanced);
+            }
+            if (metricsSampler != null) {
+                metricsSampler.onEvent();
             }
         }
 
-        // Si quedan estados por guardar después de salir del bucle
-        if (!statesToSave.isEmpty()) {
-            save(statesToSave, filepath);
-            statesToSave.clear();
-        }
+        return events;
+    }
+
+    /*
+        Guarda el MSD de la partícula grande y de las chicas e informa D ajustando retardos entre 10 muestras y
+        un décimo del tiempo simulado (más allá hay pocos orígenes y el MSD satura por las paredes).
+     */
+    private void saveMsd(String directory, double simulatedTime) throws IOException {
+        obstacleMsd.save(getFilePath(directory, "msd_obstacle.txt"));
+        particlesMsd.save(getFilePath(directory, "msd_particles.txt"));
+        double fromLag = 10 * obstacleMsd.getDt();
+        double toLag = simulatedTime / 10;
+        System.out.printf(Locale.US, "D partícula grande: %.6e, D partículas chicas: %.6e (ajuste en [%.4f, %.4f] s)%n",
+                obstacleMsd.diffusionCoefficient(fromLag, toLag), particlesMsd.diffusionCoefficient(fromLag, toLag), fromLag, toLag);
+    }
+
+    public long getDriftCheckEvery() {
+        return driftCheckEvery;
+    }
+
+    public void setDriftCheckEvery(long driftCheckEvery) {
+        this.driftCheckEvery = driftCheckEvery;
+    }
+
+    public DriftMonitor getDriftMonitor() {
+        return drift;
+    }
+
+    public double getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    public void setMetricsInterval(double metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    public boolean isPhaseTiming() {
+        return phaseTiming;
+    }
+
+    public void setPhaseTiming(boolean phaseTiming) {
+        this.phaseTiming = phaseTiming;
+    }
+
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    public void setPeriodic(boolean periodic) {
+        this.periodic = periodic;
+    }
+
+    public double getPackingFraction() {
+        return packingFraction;
+    }
+
+    public MsdTracker getObstacleMsd() {
+        return obstacleMsd;
+    }
+
+    public MsdTracker getParticlesMsd() {
+        return particlesMsd;
     }
 
     private void saveStatic(Path filePath) {
@@ -211,86 +456,38 @@ public class MolecularDynamicSystem {
         return null;
     }
 
-    // Save method
-    public void save(List<State> states, Path filePath) {
-        boolean fileExists = Files.exists(filePath);
-
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
-            // Escribir encabezados solo si el archivo no existe
-            if (!fileExists) {
-                writer.write("time,id,x,y,vx,vy\n"); // Encabezados de CSV
-            }
-            for (State state : states)
-                for (Particle p : state.getParticles())
-                    if (p.getId() == 1 || true)
-                        writer.write(String.format(Locale.ENGLISH, "%.6f,%d,%.6f,%.6f,%.6f,%.6f\n", state.getTime(), p.getId(), p.getPosition().getX(), p.getPosition().getY(), p.getVelocity().getX(), p.getVelocity().getY()));
-        } catch (IOException e) {
-            System.out.println("Error al escribir un estado: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    private List<List<Double>> getMomentums(double deltaTime, Map<Double, Double> momentumsByTime) {
-        // Encontrar el tiempo máximo para determinar el tamaño de la lista
-        double maxTime = Collections.max(momentumsByTime.keySet());
-
-        // Crear una lista donde cada índice será un múltiplo de deltaT
-        int size = (int) Math.ceil(maxTime / deltaTime);
-        List<List<Double>> momentums = new ArrayList<>();
-
-        // Inicializar cada índice con una nueva lista vacía
-        for (int i = 0; i < size; i++) {
-            momentums.add(new ArrayList<>());
-        }
-
-        // Iterar sobre el mapa combinado y agregar los valores a la lista correspondiente
-        for (Map.Entry<Double, Double> entry : momentumsByTime.entrySet()) {
-            double collisionTime = entry.getKey();
-            double momentum = entry.getValue();
-
-            // Encontrar el índice correspondiente en la lista
-            int index = (int) Math.floor(collisionTime / deltaTime);
-
-            // Sumar el valor del momento al índice correspondiente
-            List<Double> frame = momentums.get(index);
-            frame.add(momentum);
-        }
-        return momentums;
-    }
-
+    /*
+        Presión sobre las cuatro paredes juntas (perímetro 4L) por intervalo de deltaTime, leída de los acumuladores.
+     */
     public Map<Double, Double> calculatePressureForWalls(double deltaTime) {
-        Map<Double, Double> pressureByTime = new TreeMap<>();
-        List<List<Double>> momentums = this.getMomentums(deltaTime, this.wallsPressure);
-
-
-        for (int i = 0; i < momentums.size(); i++) {
-            double sumMomentum = 0;
-            for (Double momentum : momentums.get(i)) {
-                sumMomentum += momentum;
-            }
+        return recordedPressure().pressure(deltaTime, 4 * l, PressureAccumulator.walls());
+    }
 
-            double pressure = sumMomentum / (momentums.get(i).size() * deltaTime * l);
-            pressureByTime.put(deltaTime*i, pressure);
-        }
-        return pressureByTime;
+    public Map<Double, Double> calculatePressureForWall(WallType type, double deltaTime) {
+        return recordedPressure().pressure(deltaTime, l, type.ordinal());
     }
 
     public Map<Double, Double> calculatePressureForStatic(double deltaTime) {
-        Map<Double, Double> pressureByTime = new TreeMap<>();
-        List<List<Double>> momentums = this.getMomentums(deltaTime, this.staticParticlePressure);
+        double contactArea = obstacles * 2 * Math.PI * staticRadius;
+        return recordedPressure().pressure(deltaTime, contactArea, PressureAccumulator.STATIC);
+    }
 
+    /*
+        Presión media y fuerza media {fx, fy} del gas sobre el obstáculo id (0 .. obstacles - 1) en el último run.
+     */
+    public double calculatePressureForObstacle(int id) {
+        return recordedPressure().obstaclePressure(id, staticRadius);
+    }
 
-        for (int i = 0; i < momentums.size(); i++) {
-            double sumMomentum = 0;
-            for (Double momentum : momentums.get(i)) {
-                sumMomentum += momentum;
-            }
-            double contactArea = 2 * Math.PI * staticRadius;
+    public double[] calculateForceOnObstacle(int id) {
+        return recordedPressure().obstacleForce(id);
+    }
 
-            double pressure = sumMomentum / (momentums.get(i).size() * deltaTime * contactArea);
-            pressureByTime.put(deltaTime*i, pressure);
+    private PressureAccumulator recordedPressure() {
+        if (pressure == null) {
+            throw new IllegalStateException("Todavía no se corrió la simulación (fixedSolution o measure)");
         }
-        return pressureByTime;
+        return pressure;
     }
 
 }
@@ -1,81 +1,473 @@
+import models.CellGrid;
+import models.CollisionKernel;
 import models.Event;
 import models.FutureCollision;
 import models.Obstacle;
+import models.ObstacleIndex;
 import models.particles.Particle;
 import models.State;
+import models.particles.StaticParticle;
+import models.walls.Wall;
+import models.walls.WallType;
 
 import java.util.*;
 
+/*
+    Motor de eventos: en lugar de recalcular todas las colisiones después de cada evento (O(N^2)),
+    mantenemos una cola de prioridad con los eventos futuros (tiempos absolutos). Cada partícula lleva un contador
+    de colisiones y cada evento guarda los contadores con los que se predijo; al sacar un evento de la cola,
+    si algún contador cambió el evento quedó viejo y se descarta (invalidación lazy).
+    Después de cada colisión solo se vuelven a predecir las (una o dos) partículas que participaron.
+
+    Cada partícula guarda el tiempo de su última actualización (Particle.moveTo) y solo se la mueve cuando participa
+    de un evento o se predice contra ella; snapshot() las lleva a todas al tiempo actual cuando hace falta guardar.
+    Así un evento toca a las partículas involucradas y sus vecinas, no a las N.
+
+    Con periodic no hay paredes: la caja es periódica, las predicciones usan la imagen mínima y salir de la caja es un
+    evento de cruce de la grilla (que traslada a la partícula al lado opuesto). Para que la imagen mínima al momento
+    de predecir sea la del choque, cada partícula se vuelve a predecir en cada cruce de celda: con useCells la grilla
+    necesita al menos 5 celdas por lado; sin useCells (todos contra todos) se usa una grilla de 8x8 solo para eso,
+    y el diámetro de contacto tiene que ser menor que L/4.
+
+    Con useCells las predicciones se hacen solo contra las partículas de las celdas vecinas (CellGrid) y contra
+    los obstáculos fijos (StaticParticle) que alcanzan la celda de la partícula (ObstacleIndex), que quedan fuera de
+    la grilla. Los cruces de celda son eventos internos: no se devuelven.
+    Los obstáculos móviles son partículas comunes (de masa grande) y van en la grilla; el lado de la celda lo fija el
+    mayor de ellos.
+ */
 public class MolecularDynamicWithFixObstacle implements Iterator<State> {
 
+    // Cuando la cola supera este tamaño se limpian los eventos inválidos (si no, crece sin límite).
+    private static final int COMPACT_FACTOR = 16;
+
     private double velocity;
     private double radius;
     private double mass;
     private double staticRadius;
-    private List<State> states;
+
+    private final Map<WallType, Wall> walls;
+    private final double l;
+    private final List<Particle> particles = new ArrayList<>();
+    private final List<Particle> staticParticles = new ArrayList<>();
+    private final CellGrid grid;
+    private final ObstacleIndex obstacles;
+    private final boolean periodic;
+    // Con periodic y sin useCells la grilla solo marca cuándo volver a predecir: se predice contra todas las partículas
+    private final boolean neighboursOnly;
+    private final PriorityQueue<FutureCollision> queue = new PriorityQueue<>();
+    private double time;
+    private final EngineMetrics metrics = new EngineMetrics();
+
+    // Columnas de los candidatos de la predicción en curso para CollisionKernel (se reutilizan, no se aloca por evento)
+    private final List<Particle> neighbourBuffer = new ArrayList<>();
+    private Particle[] candidates = new Particle[0];
+    private double[] candidateX = new double[0];
+    private double[] candidateY = new double[0];
+    private double[] candidateVx = new double[0];
+    private double[] candidateVy = new double[0];
+    private double[] candidateR = new double[0];
+    private double[] candidateTimes = new double[0];
 
     public MolecularDynamicWithFixObstacle(double velocity, double radius, double mass, double staticRadius, State initial) {
+        this(velocity, radius, mass, staticRadius, initial, true);
+    }
+
+    public MolecularDynamicWithFixObstacle(double velocity, double radius, double mass, double staticRadius, State initial, boolean useCells) {
+        this(velocity, radius, mass, staticRadius, initial, useCells, false);
+    }
+
+    public MolecularDynamicWithFixObstacle(double velocity, double radius, double mass, double staticRadius, State initial, boolean useCells, boolean periodic) {
+        this.periodic = periodic;
         this.velocity = velocity;
         this.radius = radius;
         this.mass = mass;
         this.staticRadius = staticRadius;
 
-        this.states = new LinkedList<>();
-        this.states.add(initial);
+        this.walls = initial.getWalls();
+        this.time = initial.getTime();
+        double maxRadius = 0;
+        for (Particle p : initial.getParticles()) {
+            Particle clone = p.clone();
+            clone.setLastUpdate(time);
+            particles.add(clone);
+            if (clone instanceof StaticParticle) {
+                staticParticles.add(clone);
+            } else {
+                maxRadius = Math.max(maxRadius, clone.getRadius());
+            }
+        }
+
+        this.l = walls.get(WallType.RIGHT).getL();
+        int cellsPerSide = maxRadius > 0 ? (int) Math.floor(l / (2 * maxRadius)) : 0;
+        if (periodic) {
+            neighboursOnly = useCells && cellsPerSide >= 5;
+            if (!neighboursOnly && 2 * maxRadius >= l / 4) {
+                throw new IllegalArgumentException("En la caja periódica el diámetro tiene que ser menor que L/4");
+            }
+            grid = new CellGrid(l, neighboursOnly ? cellsPerSide : 8, true);
+        } else {
+            neighboursOnly = useCells && maxRadius > 0;
+            grid = neighboursOnly ? new CellGrid(l, 2 * maxRadius) : null;
+        }
+        if (grid != null) {
+            for (Particle p : particles) {
+                if (!(p instanceof StaticParticle)) {
+                    grid.add(p);
+                }
+            }
+        }
+        obstacles = neighboursOnly ? new ObstacleIndex(grid, staticParticles, maxRadius) : null;
+
+        for (Particle p : particles) {
+            predict(p);
+        }
+    }
+
+    /*
+        Agrega a la cola las colisiones futuras de p: con la pared más cercana y con cada partícula que choque antes
+        que esa pared (las posteriores no pueden ser válidas, la pared cambia la velocidad de p antes).
+     */
+    private void predict(Particle p) {
+        if (p instanceof StaticParticle) {
+            return;
+        }
+        metrics.predictions++;
+        if (periodic) {
+            predictParticles(p, Double.POSITIVE_INFINITY);
+            return;
+        }
+        double vx = p.getVelocity().getX();
+        double vy = p.getVelocity().getY();
+        double tx = Wall.axisTime(p.getPosition().getX(), vx, p.getRadius(), l);
+        double ty = Wall.axisTime(p.getPosition().getY(), vy, p.getRadius(), l);
+        double wallTime = Math.min(tx, ty);
+        if (wallTime < Double.POSITIVE_INFINITY) {
+            queue.add(new FutureCollision(time + wallTime, p, walls.get(Wall.nearest(tx, ty, vx, vy))));
+        }
+        predictParticles(p, wallTime);
+    }
+
+    private void predictParticles(Particle p, double wallTime) {
+        if (grid == null) {
+            predictAgainst(p, particles, wallTime);
+            return;
+        }
+        if (neighboursOnly) {
+            predictAgainst(p, grid.neighbours(p, neighbourBuffer), wallTime);
+            predictAgainst(p, obstacles.near(p), wallTime);
+        } else {
+            predictAgainst(p, particles, wallTime);
+        }
+
+        double crossTime = grid.timeToCollide(p);
+        if (crossTime < wallTime) {
+            queue.add(new FutureCollision(time + crossTime, p, grid));
+        }
+    }
+
+    private void predictAgainst(Particle p, List<Particle> others, double wallTime) {
+        ensureCandidateCapacity(others.size());
+        int count = 0;
+        for (Particle other : others) {
+            if (other == p) continue;
+            other.moveTo(time);
+            candidates[count] = other;
+            if (periodic) {
+                // Posición de la imagen de other más cercana a p
+                candidateX[count] = p.getPosition().getX() + grid.minimumImage(other.getPosition().getX() - p.getPosition().getX());
+                candidateY[count] = p.getPosition().getY() + grid.minimumImage(other.getPosition().getY() - p.getPosition().getY());
+            } else {
+                candidateX[count] = other.getPosition().getX();
+                candidateY[count] = other.getPosition().getY();
+            }
+            candidateVx[count] = other.getVelocity().getX();
+            candidateVy[count] = other.getVelocity().getY();
+            candidateR[count] = other.getRadius();
+            count++;
+        }
+        metrics.candidates += count;
+        int earliest = CollisionKernel.earliest(p.getPosition().getX(), p.getPosition().getY(),
+                p.getVelocity().getX(), p.getVelocity().getY(), p.getRadius(),
+                candidateX, candidateY, candidateVx, candidateVy, candidateR, 0, count, candidateTimes);
+        if (earliest < 0 || candidateTimes[earliest] >= wallTime) {
+            return;
+        }
+        for (int k = 0; k < count; k++) {
+            if (candidateTimes[k] < wallTime) {
+                queue.add(new FutureCollision(time + candidateTimes[k], p, candidates[k]));
+            }
+        }
+    }
+
+    private void ensureCandidateCapacity(int size) {
+        if (candidates.length >= size) {
+            return;
+        }
+        int capacity = Math.max(size, 2 * candidates.length);
+        candidates = new Particle[capacity];
+        candidateX = new double[capacity];
+        candidateY = new double[capacity];
+        candidateVx = new double[capacity];
+        candidateVy = new double[capacity];
+        candidateR = new double[capacity];
+        candidateTimes = new double[capacity];
+    }
+
+    private double nextWallTime(Particle p) {
+        if (periodic) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.min(
+                Wall.axisTime(p.getPosition().getX(), p.getVelocity().getX(), p.getRadius(), l),
+                Wall.axisTime(p.getPosition().getY(), p.getVelocity().getY(), p.getRadius(), l));
     }
 
     @Override
     public boolean hasNext() {
-        return true;
+        return !queue.isEmpty();
     }
 
+    /*
+        Compatibilidad con Iterator<State>: procesa la próxima colisión y devuelve el estado completo después de ella.
+     */
     @Override
     public State next() {
-        if (states.size() >= 3)
-            states.removeFirst();
+        advance();
+        return snapshot();
+    }
+
+    /*
+        Procesa la próxima colisión (los cruces de celda anteriores se resuelven adentro) y la devuelve.
+        No mueve a las partículas que no participan.
+     */
+    public FutureCollision advance() {
+        return advance(Double.POSITIVE_INFINITY);
+    }
 
-        State currentState = states.getLast();
+    /*
+        Igual que advance() pero sin pasar de until: si el próximo evento (cruce o colisión) es posterior, lo deja en
+        la cola, lleva el tiempo a until y devuelve null.
+     */
+    public FutureCollision advance(double until) {
+        FutureCollision nextCollision = nextValidEvent();
+        while (nextCollision.getTc() <= until && nextCollision.getObstacle() == grid) {
+            cross(nextCollision);
+            nextCollision = nextValidEvent();
+        }
+        if (nextCollision.getTc() > until) {
+            queue.add(nextCollision);
+            time = until;
+            return null;
+        }
+        time = nextCollision.getTc();
 
-        Set<FutureCollision> collisionList = currentState.getCollisionSet();
-        FutureCollision nextCollision = collisionList.iterator().next();
+        /* Aplicamos la colisión y volvemos a predecir solo a las partículas involucradas. */
+        long start = metrics.isTiming() ? System.nanoTime() : 0;
+        Particle collisionParticle = nextCollision.getParticle();
+        Obstacle collisionObstacle = nextCollision.getObstacle();
+        collisionParticle.moveTo(time);
+        if (collisionObstacle instanceof Particle other) {
+            other.moveTo(time);
+        }
+        if (periodic && collisionObstacle instanceof Particle other) {
+            Event.applyCollision(collisionParticle, other,
+                    grid.minimumImage(collisionParticle.getPosition().getX() - other.getPosition().getX()),
+                    grid.minimumImage(collisionParticle.getPosition().getY() - other.getPosition().getY()));
+        } else {
+            Event.applyCollision(collisionParticle, collisionObstacle);
+        }
 
-        /* Clonamos las particulas y avanzamos hacia la colisión. */
-        Set<Particle> saveParticles = new HashSet<>(); /* No se les aplica la colisión, se utilizan para el guardado del estado */
-        for (Particle p : currentState.getParticles()) {
-            Particle saveParticle = p.clone();
-            saveParticle.move(nextCollision.getTc());
-            saveParticles.add(saveParticle);
+        collisionParticle.incrementCollisionCount();
+        if (collisionObstacle instanceof Particle other) {
+            other.incrementCollisionCount();
+        }
+        metrics.collisions++;
+        long resolved = metrics.isTiming() ? System.nanoTime() : 0;
+        if (queue.size() > COMPACT_FACTOR * particles.size() + 1024) {
+            queue.removeIf(event -> !event.isValid());
         }
+        predict(collisionParticle);
+        if (collisionObstacle instanceof Particle other) {
+            predict(other);
+        }
+        if (metrics.isTiming()) {
+            long end = System.nanoTime();
+            metrics.collisionNanos += resolved - start;
+            metrics.predictionNanos += end - resolved;
+        }
+        return nextCollision;
+    }
 
-        /* Aplicamos las colisiones */
-        Set<Particle> nextParticles = new HashSet<>();  /* Se les aplica la colisión, se utilizan para calcular el siguiente estado */
-        Particle collisionParticle = null;
-        Obstacle collisionObstacle = null;
-        for (Particle p : currentState.getParticles()) {
-            Particle nextParticle = p.clone();
-            nextParticle.move(nextCollision.getTc());
+    /*
+        Estado de todas las partículas al tiempo actual (se clonan, el motor sigue modificando las suyas).
+     */
+    public State snapshot() {
+        Set<Particle> saveParticles = new HashSet<>();
+        for (Particle p : particles) {
+            p.moveTo(time);
+            saveParticles.add(p.clone());
+        }
+        return new State(time, walls, saveParticles);
+    }
 
-            if (nextCollision.getParticle().equals(nextParticle)) {
-                collisionParticle = nextParticle;
+    /*
+        Cruce de celda: la velocidad no cambia, sus eventos siguen valiendo; solo agregamos los vecinos nuevos.
+     */
+    private void cross(FutureCollision crossing) {
+        time = crossing.getTc();
+        Particle p = crossing.getParticle();
+        long start = metrics.isTiming() ? System.nanoTime() : 0;
+        p.moveTo(time);
+        grid.cross(p);
+        metrics.crossings++;
+        metrics.predictions++;
+        predictParticles(p, nextWallTime(p));
+        if (metrics.isTiming()) {
+            metrics.predictionNanos += System.nanoTime() - start;
+        }
+    }
+
+    /*
+        Tiempo de la próxima colisión (sin procesarla). Hasta ese tiempo todas las partículas se mueven en línea recta
+        con la velocidad que tienen ahora. Los cruces de celda anteriores se procesan acá (no cambian velocidades), si
+        no advance() resolvería el cruce y la colisión juntos y quien muestrea entre los dos usaría las velocidades de
+        después del choque.
+     */
+    public double nextEventTime() {
+        return nextEventTime(Double.POSITIVE_INFINITY);
+    }
+
+    /*
+        Igual, pero sin procesar cruces posteriores a until (el tiempo del motor no pasa de until). Si devuelve algo
+        mayor que until puede ser un cruce.
+     */
+    public double nextEventTime(double until) {
+        FutureCollision event = queue.peek();
+        while (event != null && (!event.isValid() || (event.getObstacle() == grid && event.getTc() <= until))) {
+            queue.poll();
+            metrics.popped++;
+            if (event.isValid()) {
+                cross(event);
+            } else {
+                metrics.stale++;
             }
-            if (nextCollision.getObstacle().equals(nextParticle)) {
-                collisionObstacle = nextParticle;
+            event = queue.peek();
+        }
+        return event == null ? Double.POSITIVE_INFINITY : event.getTc();
+    }
+
+    private FutureCollision nextValidEvent() {
+        FutureCollision event = queue.poll();
+        metrics.popped++;
+        while (event != null && !event.isValid()) {
+            metrics.stale++;
+            event = queue.poll();
+            metrics.popped++;
+        }
+        if (event == null) {
+            throw new NoSuchElementException("No hay más colisiones");
+        }
+        return event;
+    }
+
+    /*
+        Lleva todas las partículas al tiempo actual y agrega a overlapping los pares {p, q} que se superponen más de
+        tolerance (distancia < (1 - tolerance) * sigma). Devuelve la menor separación relativa (distancia / sigma - 1)
+        entre pares candidatos a chocar (vecinos de celda u obstáculos cercanos; todos contra todos sin grilla).
+     */
+    public double scanOverlaps(double tolerance, List<Particle[]> overlapping) {
+        for (Particle p : particles) {
+            p.moveTo(time);
+        }
+        double minimumGap = Double.POSITIVE_INFINITY;
+        for (Particle p : particles) {
+            if (p instanceof StaticParticle) continue;
+            if (neighboursOnly) {
+                minimumGap = Math.min(minimumGap, scanAgainst(p, grid.neighbours(p, neighbourBuffer), tolerance, overlapping));
+                minimumGap = Math.min(minimumGap, scanAgainst(p, obstacles.near(p), tolerance, overlapping));
+            } else {
+                minimumGap = Math.min(minimumGap, scanAgainst(p, particles, tolerance, overlapping));
+            }
+        }
+        return minimumGap;
+    }
+
+    private double scanAgainst(Particle p, List<Particle> others, double tolerance, List<Particle[]> overlapping) {
+        double minimumGap = Double.POSITIVE_INFINITY;
+        for (Particle q : others) {
+            // Cada par de móviles una sola vez; los estáticos solo desde la partícula móvil
+            if (q == p || (!(q instanceof StaticParticle) && q.getId() < p.getId())) continue;
+            double dx = minimumImage(q.getPosition().getX() - p.getPosition().getX());
+            double dy = minimumImage(q.getPosition().getY() - p.getPosition().getY());
+            double sigma = p.getRadius() + q.getRadius();
+            double gap = Math.sqrt(dx * dx + dy * dy) / sigma - 1;
+            minimumGap = Math.min(minimumGap, gap);
+            if (gap < -tolerance) {
+                overlapping.add(new Particle[]{ p, q });
             }
-            nextParticles.add(nextParticle);
         }
+        return minimumGap;
+    }
+
+    /*
+        Después de cambiar posiciones o velocidades desde afuera (DriftMonitor), con las partículas ya llevadas al
+        tiempo actual (scanOverlaps lo hace): se vuelven a ubicar en la grilla y se predice todo de nuevo.
+     */
+    public void rebuild() {
+        queue.clear();
+        for (Particle p : particles) {
+            p.moveTo(time);
+            if (grid != null && !(p instanceof StaticParticle)) {
+                grid.update(p);
+            }
+        }
+        for (Particle p : particles) {
+            predict(p);
+        }
+    }
 
-        if (collisionObstacle == null) {
-            collisionObstacle = nextCollision.getObstacle();
+    /*
+        Para quien mueve una partícula a mano (DriftMonitor): la pasa a la celda que le corresponde. No vuelve a
+        predecir; después hay que llamar a rebuild.
+     */
+    public void relocate(Particle p) {
+        if (grid != null && !(p instanceof StaticParticle)) {
+            grid.update(p);
         }
-        Event.applyCollision(collisionParticle, collisionObstacle);
+    }
+
+    public double minimumImage(double delta) {
+        return periodic ? grid.minimumImage(delta) : delta;
+    }
 
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    public double getL() {
+        return l;
+    }
 
-        /* Guardamos el estado para la siguiente iteración. */
-        State nextState = new State(currentState.getTime() + nextCollision.getTc(), currentState.getWalls(), nextParticles);
-        states.add(nextState);
+    public double getTime() {
+        return time;
+    }
+
+    /*
+        Partículas del motor (no clonadas): cada una está en su getLastUpdate(), no necesariamente en getTime().
+     */
+    public List<Particle> getParticles() {
+        return Collections.unmodifiableList(particles);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
 
-        /* Este estado se utiliza para guardar (Punto 4 del algoritmo). */
-        return new State(currentState.getTime() + nextCollision.getTc(), currentState.getWalls(), saveParticles);
+    /*
+        Contadores del motor (los del objeto devuelto se siguen actualizando; ver EngineMetrics.copy).
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
     }
 
 }
@@ -0,0 +1,219 @@
+import models.particles.Particle;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    Desplazamiento cuadrático medio (MSD) de un grupo de partículas calculado durante la simulación, sin guardar la
+    trayectoria. Se muestrea cada dt de tiempo simulado (interpolando entre eventos como Sampler) y se usa un
+    correlador multiple-tau: el nivel k guarda las últimas P posiciones tomadas cada 2^k muestras, así con memoria
+    O(P log T) se cubren retardos de dt hasta T, usando todos los orígenes de tiempo disponibles en cada nivel.
+    El nivel k recién se crea cuando ya hubo 2^k muestras.
+
+    Las posiciones son desenrolladas: se acumulan los desplazamientos entre muestras (con imagen mínima si la caja
+    es periódica, period > 0), así un cruce de borde no aparece como un salto de L.
+    El coeficiente de difusión sale del ajuste MSD = 4 D t (2D) en un rango de retardos.
+ */
+public class MsdTracker {
+
+    // Posiciones por nivel; con P = 16 y decimación 2, los niveles > 0 solo aportan retardos P/2 .. P-1
+    private static final int P = 16;
+    private static final int M = 2;
+    private static final int MAX_LEVELS = 48;
+
+    private final int[] ids;
+    private final double dt;
+    private final double period;
+
+    private int[] indexes;
+    private final double[] unwrappedX;
+    private final double[] unwrappedY;
+    private final double[] lastX;
+    private final double[] lastY;
+
+    // history[level][slot][tracked], ring de P posiciones por nivel
+    private final double[][][] historyX = new double[MAX_LEVELS][][];
+    private final double[][][] historyY = new double[MAX_LEVELS][][];
+    private final long[] levelSamples = new long[MAX_LEVELS];
+    private final double[][] sum = new double[MAX_LEVELS][P];
+    private final long[][] count = new long[MAX_LEVELS][P];
+    private int levels = 0;
+    private long samples = 0;
+
+    /*
+        period es el lado de la caja periódica (0 si tiene paredes); ids, las partículas a seguir.
+     */
+    public MsdTracker(double dt, double period, int[] ids) {
+        this.ids = ids;
+        this.dt = dt;
+        this.period = period;
+        this.unwrappedX = new double[ids.length];
+        this.unwrappedY = new double[ids.length];
+        this.lastX = new double[ids.length];
+        this.lastY = new double[ids.length];
+    }
+
+    public void sampleUntil(MolecularDynamicWithFixObstacle engine, double until) {
+        if (Double.isInfinite(until)) {
+            throw new IllegalArgumentException("sampleUntil necesita un tiempo finito");
+        }
+        while (samples * dt <= until) {
+            sample(engine.getParticles(), samples * dt);
+        }
+    }
+
+    private void sample(List<Particle> particles, double t) {
+        if (indexes == null) {
+            resolve(particles);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            Particle p = particles.get(indexes[i]);
+            double elapsed = t - p.getLastUpdate();
+            double x = p.getPosition().getX() + p.getVelocity().getX() * elapsed;
+            double y = p.getPosition().getY() + p.getVelocity().getY() * elapsed;
+            if (samples == 0) {
+                unwrappedX[i] = x;
+                unwrappedY[i] = y;
+            } else {
+                unwrappedX[i] += minimumImage(x - lastX[i]);
+                unwrappedY[i] += minimumImage(y - lastY[i]);
+            }
+            lastX[i] = x;
+            lastY[i] = y;
+        }
+
+        // La muestra entra al nivel 0 y, cada M^k muestras (a partir de la muestra M^k), también al nivel k
+        push(0);
+        long stride = M;
+        for (int level = 1; level < MAX_LEVELS && stride <= samples && samples % stride == 0; level++, stride *= M) {
+            push(level);
+        }
+        samples++;
+    }
+
+    private void resolve(List<Particle> particles) {
+        indexes = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indexes[i] = -1;
+            for (int j = 0; j < particles.size(); j++) {
+                if (particles.get(j).getId() == ids[i]) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if (indexes[i] < 0) {
+                throw new IllegalArgumentException("No hay una partícula con id " + ids[i]);
+            }
+        }
+    }
+
+    private double minimumImage(double delta) {
+        return period > 0 ? delta - period * Math.rint(delta / period) : delta;
+    }
+
+    private void push(int level) {
+        if (level == levels) {
+            historyX[level] = new double[P][ids.length];
+            historyY[level] = new double[P][ids.length];
+            levels++;
+        }
+        long n = levelSamples[level];
+        int slot = (int) (n % P);
+        double[] x = historyX[level][slot];
+        double[] y = historyY[level][slot];
+        System.arraycopy(unwrappedX, 0, x, 0, ids.length);
+        System.arraycopy(unwrappedY, 0, y, 0, ids.length);
+
+        // Retardos j (en unidades de M^level muestras) contra las posiciones guardadas en este nivel
+        int first = level == 0 ? 1 : P / M;
+        for (int j = first; j < P && j <= n; j++) {
+            double[] x0 = historyX[level][(int) ((n - j) % P)];
+            double[] y0 = historyY[level][(int) ((n - j) % P)];
+            double displacement = 0;
+            for (int i = 0; i < ids.length; i++) {
+                double dx = x[i] - x0[i];
+                double dy = y[i] - y0[i];
+                displacement += dx * dx + dy * dy;
+            }
+            sum[level][j] += displacement / ids.length;
+            count[level][j]++;
+        }
+        levelSamples[level]++;
+    }
+
+    /*
+        Retardos (en tiempo) para los que hay al menos una medición, en orden creciente.
+     */
+    public double[] getLags() {
+        return collect(true);
+    }
+
+    public double[] getMsd() {
+        return collect(false);
+    }
+
+    private double[] collect(boolean lags) {
+        int size = 0;
+        for (int level = 0; level < levels; level++) {
+            for (int j = 0; j < P; j++) {
+                if (count[level][j] > 0) size++;
+            }
+        }
+        double[] values = new double[size];
+        int k = 0;
+        for (int level = 0; level < levels; level++) {
+            double stride = Math.pow(M, level);
+            for (int j = 0; j < P; j++) {
+                if (count[level][j] > 0) {
+                    values[k++] = lags ? j * stride * dt : sum[level][j] / count[level][j];
+                }
+            }
+        }
+        return values;
+    }
+
+    /*
+        D por mínimos cuadrados de MSD = 4 D t + b con los retardos en [fromLag, toLag].
+     */
+    public double diffusionCoefficient(double fromLag, double toLag) {
+        double[] lags = getLags();
+        double[] msd = getMsd();
+        double n = 0, st = 0, sm = 0, stt = 0, stm = 0;
+        for (int k = 0; k < lags.length; k++) {
+            if (lags[k] >= fromLag && lags[k] <= toLag) {
+                n++;
+                st += lags[k];
+                sm += msd[k];
+                stt += lags[k] * lags[k];
+                stm += lags[k] * msd[k];
+            }
+        }
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double slope = (n * stm - st * sm) / (n * stt - st * st);
+        return slope / 4;
+    }
+
+    public void save(Path filePath) throws IOException {
+        double[] lags = getLags();
+        double[] msd = getMsd();
+        try (BufferedWriter writer = Files.newBufferedWriter(filePath)) {
+            for (int k = 0; k < lags.length; k++) {
+                writer.write(String.format(Locale.US, "%.9f\t%.9e\n", lags[k], msd[k]));
+            }
+        }
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+}
@@ -0,0 +1,431 @@
+import models.FutureCollision;
+import models.Obstacle;
+import models.State;
+import models.particles.Particle;
+import models.particles.StaticParticle;
+import models.walls.Wall;
+import models.walls.WallType;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/*
+    Motor de eventos con descomposición espacial: la caja se divide en franjas verticales y cada franja corre su
+    propio MolecularDynamicWithFixObstacle (su propia cola) en un thread, por ventanas de tiempo [t, t + window].
+
+    Los choques de discos duros no tienen lookahead (un choque en el borde afecta al vecino en el mismo instante),
+    así que las ventanas son especulativas con rollback:
+      - Cada franja simula sus partículas propias (las que están en la franja al empezar la ventana) y, como
+        fantasmas, las de un halo de HALO_CELLS diámetros a cada lado. Los fantasmas se mueven y chocan como
+        cualquier otra partícula, pero su resultado no se usa.
+      - Se guarda la historia de cada partícula en la ventana (tiempo, contra quién y velocidad después de cada
+        evento) y el rango de x que recorrió.
+      - Al terminar se valida cada franja: toda partícula ajena cuyo recorrido (real, según su dueña, o simulado como
+        fantasma) pase a distancia de contacto de lo que recorrieron las partículas propias tiene que tener la misma
+        historia como fantasma que en su franja, y las propias no pueden acercarse al borde exterior del halo.
+        Si se cumple, las propias tuvieron exactamente las mismas colisiones que en el motor serial (el primer evento
+        distinto sería con una partícula ajena cuya historia coincide, absurdo).
+      - Si alguna franja falla se descarta la ventana entera, se reduce window a la mitad y se repite; después de
+        MAX_FAILURES fallas seguidas la ventana se corre con el motor serial, así siempre se avanza.
+    Con ventanas exitosas window crece, así que se ajusta sola a la frecuencia de colisiones.
+
+    El resultado es el del motor serial (a menos de redondeo, TOLERANCE), no solo estadísticamente igual.
+    Cada ventana reconstruye los motores de las franjas (O(N / franjas) por thread), así que conviene que en una
+    ventana haya del orden de una colisión por partícula o más. Solo caja con paredes (no periódica).
+ */
+public class ParallelMolecularDynamic implements AutoCloseable {
+
+    private static final int HALO_CELLS = 8;
+    private static final double TOLERANCE = 1e-8;
+    private static final int MAX_FAILURES = 4;
+
+    /*
+        Historia de una partícula en la ventana: eventos (tiempo, id del otro, vx, vy después) y rango de x.
+     */
+    private static final class Track {
+        private final int id;
+        private final boolean own;
+        private double minX;
+        private double maxX;
+        private double[] times = new double[4];
+        private int[] partners = new int[4];
+        private double[] velocities = new double[8];
+        private int size = 0;
+
+        Track(int id, boolean own, double x) {
+            this.id = id;
+            this.own = own;
+            this.minX = x;
+            this.maxX = x;
+        }
+
+        void extend(double x) {
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+        }
+
+        void add(double time, int partner, double vx, double vy) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, 2 * size);
+                partners = Arrays.copyOf(partners, 2 * size);
+                velocities = Arrays.copyOf(velocities, 4 * size);
+            }
+            times[size] = time;
+            partners[size] = partner;
+            velocities[2 * size] = vx;
+            velocities[2 * size + 1] = vy;
+            size++;
+        }
+
+        boolean overlaps(double from, double to) {
+            return maxX >= from && minX <= to;
+        }
+
+        boolean matches(Track other) {
+            if (other == null || size != other.size) {
+                return false;
+            }
+            for (int k = 0; k < size; k++) {
+                if (partners[k] != other.partners[k]
+                        || !close(times[k], other.times[k])
+                        || !close(velocities[2 * k], other.velocities[2 * k])
+                        || !close(velocities[2 * k + 1], other.velocities[2 * k + 1])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean close(double a, double b) {
+            return Math.abs(a - b) <= TOLERANCE * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+        }
+    }
+
+    /*
+        Una franja [from, to) durante una ventana; simula las partículas con x en [lo, hi] (franja + halo).
+     */
+    private final class Strip implements Callable<Strip> {
+        private final int index;
+        private final double from;
+        private final double to;
+        private final double lo;
+        private final double hi;
+        private final double until;
+
+        private final Map<Integer, Track> tracks = new HashMap<>();
+        private final List<Track> ownTracks = new ArrayList<>();
+        // Propias que se acercaron a menos de un halo del borde de la franja (las únicas que pueden tocar a otra franja)
+        private final List<Track> edge = new ArrayList<>();
+        private final List<Particle> result = new ArrayList<>();
+        private long events = 0;
+
+        Strip(int index, double until) {
+            this.index = index;
+            this.from = index * stripWidth;
+            this.to = index == strips - 1 ? l : (index + 1) * stripWidth;
+            this.lo = from - halo;
+            this.hi = to + halo;
+            this.until = until;
+        }
+
+        private boolean owns(double x) {
+            return x >= from && (x < to || index == strips - 1);
+        }
+
+        @Override
+        public Strip call() {
+            Set<Particle> simulated = new HashSet<>();
+            for (Particle p : moving) {
+                double x = p.getPosition().getX();
+                if (x >= lo && x <= hi) {
+                    simulated.add(p);
+                    Track track = new Track(p.getId(), owns(x), x);
+                    tracks.put(p.getId(), track);
+                    if (track.own) {
+                        ownTracks.add(track);
+                    }
+                }
+            }
+            double reach = maxObstacleRadius + contact;
+            for (Particle p : statics) {
+                double x = p.getPosition().getX();
+                if (x >= lo - reach && x <= hi + reach) {
+                    simulated.add(p);
+                }
+            }
+
+            MolecularDynamicWithFixObstacle engine = new MolecularDynamicWithFixObstacle(0, 0, 0, 0, new State(time, walls, simulated));
+            while (engine.nextEventTime(until) <= until) {
+                FutureCollision event = engine.advance(until);
+                if (event == null) {
+                    break;
+                }
+                Particle particle = event.getParticle();
+                Obstacle obstacle = event.getObstacle();
+                record(particle, partnerId(obstacle), event.getTc());
+                int owner = particle.getId();
+                if (obstacle instanceof Particle other && !(other instanceof StaticParticle)) {
+                    record(other, particle.getId(), event.getTc());
+                    // Un choque entre franjas aparece en las dos: lo cuenta la dueña del id menor
+                    owner = Math.min(owner, other.getId());
+                }
+                if (tracks.get(owner).own) {
+                    events++;
+                }
+            }
+
+            for (Particle p : engine.getParticles()) {
+                Track track = tracks.get(p.getId());
+                if (track == null) {
+                    continue;
+                }
+                p.moveTo(until);
+                track.extend(p.getPosition().getX());
+                if (track.own) {
+                    result.add(p);
+                    if (track.minX <= from + halo || track.maxX >= to - halo) {
+                        edge.add(track);
+                    }
+                }
+            }
+            return this;
+        }
+
+        private void record(Particle p, int partner, double eventTime) {
+            Track track = tracks.get(p.getId());
+            track.extend(p.getPosition().getX());
+            track.add(eventTime, partner, p.getVelocity().getX(), p.getVelocity().getY());
+        }
+
+        /*
+            Ver el comentario de la clase. Solo lee (las franjas ya terminaron), así que se valida en paralelo.
+         */
+        boolean validate(List<Strip> all, Track[] owners) {
+            // Recorrido de las propias ensanchado a distancia de contacto
+            double footprintFrom = Double.POSITIVE_INFINITY;
+            double footprintTo = Double.NEGATIVE_INFINITY;
+            for (Track track : ownTracks) {
+                if ((lo > 0 && track.minX < lo + contact) || (hi < l && track.maxX > hi - contact)) {
+                    return false;
+                }
+                footprintFrom = Math.min(footprintFrom, track.minX - contact);
+                footprintTo = Math.max(footprintTo, track.maxX + contact);
+            }
+
+            for (Strip other : all) {
+                if (other == this) continue;
+                for (Track real : other.edge) {
+                    if (real.overlaps(footprintFrom, footprintTo)) {
+                        Track ghost = tracks.get(real.id);
+                        if (ghost == null || !ghost.matches(real)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            for (Track ghost : tracks.values()) {
+                if (!ghost.own && ghost.overlaps(footprintFrom, footprintTo) && !ghost.matches(owners[ghost.id])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Map<WallType, Wall> walls;
+    private final double l;
+    private final int strips;
+    private final double stripWidth;
+    // Mayor distancia de contacto entre partículas móviles y ancho del halo
+    private final double contact;
+    private final double halo;
+    private final double maxObstacleRadius;
+    private final int maxId;
+    private final ExecutorService pool;
+
+    // Estado global al tiempo time
+    private List<Particle> moving = new ArrayList<>();
+    private final List<Particle> statics = new ArrayList<>();
+    private double time;
+    private double window;
+
+    private long events = 0;
+    private long windows = 0;
+    private long rollbacks = 0;
+    private long serialWindows = 0;
+
+    public ParallelMolecularDynamic(State initial, int strips) {
+        this(initial, strips, strips);
+    }
+
+    public ParallelMolecularDynamic(State initial, int strips, int threads) {
+        this.walls = initial.getWalls();
+        this.l = walls.get(WallType.RIGHT).getL();
+        this.time = initial.getTime();
+
+        double maxRadius = 0;
+        double obstacleRadius = 0;
+        double maxSpeed = 0;
+        int id = 0;
+        for (Particle p : initial.getParticles()) {
+            Particle clone = p.clone();
+            clone.setLastUpdate(time);
+            id = Math.max(id, p.getId());
+            if (clone instanceof StaticParticle) {
+                statics.add(clone);
+                obstacleRadius = Math.max(obstacleRadius, clone.getRadius());
+            } else {
+                moving.add(clone);
+                maxRadius = Math.max(maxRadius, clone.getRadius());
+                maxSpeed = Math.max(maxSpeed, Math.hypot(clone.getVelocity().getX(), clone.getVelocity().getY()));
+            }
+        }
+        if (maxRadius <= 0) {
+            throw new IllegalArgumentException("No hay partículas móviles");
+        }
+        this.maxId = id;
+        this.maxObstacleRadius = obstacleRadius;
+        this.contact = 2 * maxRadius;
+        this.halo = HALO_CELLS * contact;
+        // Cada franja tiene que ser más ancha que los dos halos (ver Strip.edge)
+        this.strips = Math.max(1, Math.min(strips, (int) Math.floor(l / (2 * halo + contact))));
+        this.stripWidth = l / this.strips;
+        // Primera ventana: lo que tarda la partícula más rápida en recorrer un diámetro
+        this.window = maxSpeed > 0 ? contact / maxSpeed : 1;
+        this.pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, this.strips)));
+    }
+
+    public void runUntil(double until) throws InterruptedException {
+        int failures = 0;
+        while (time < until) {
+            double end = Math.min(until, time + window);
+            if (failures >= MAX_FAILURES) {
+                runSerial(end);
+                failures = 0;
+                continue;
+            }
+            if (runWindow(end)) {
+                window *= 1.25;
+                failures = 0;
+            } else {
+                rollbacks++;
+                window /= 2;
+                failures++;
+            }
+        }
+    }
+
+    private boolean runWindow(double until) throws InterruptedException {
+        List<Strip> tasks = new ArrayList<>();
+        for (int i = 0; i < strips; i++) {
+            tasks.add(new Strip(i, until));
+        }
+        List<Strip> done = collect(pool.invokeAll(tasks));
+
+        Track[] owners = new Track[maxId + 1];
+        for (Strip strip : done) {
+            for (Track track : strip.ownTracks) {
+                owners[track.id] = track;
+            }
+        }
+        List<Callable<Boolean>> checks = new ArrayList<>();
+        for (Strip strip : done) {
+            checks.add(() -> strip.validate(done, owners));
+        }
+        for (Boolean valid : collect(pool.invokeAll(checks))) {
+            if (!valid) {
+                return false;
+            }
+        }
+
+        List<Particle> next = new ArrayList<>(moving.size());
+        for (Strip strip : done) {
+            next.addAll(strip.result);
+            events += strip.events;
+        }
+        moving = next;
+        time = until;
+        windows++;
+        return true;
+    }
+
+    private void runSerial(double until) {
+        Set<Particle> all = new HashSet<>(moving);
+        all.addAll(statics);
+        MolecularDynamicWithFixObstacle engine = new MolecularDynamicWithFixObstacle(0, 0, 0, 0, new State(time, walls, all));
+        while (engine.nextEventTime(until) <= until && engine.advance(until) != null) {
+            events++;
+        }
+        List<Particle> next = new ArrayList<>(moving.size());
+        for (Particle p : engine.getParticles()) {
+            if (!(p instanceof StaticParticle)) {
+                p.moveTo(until);
+                next.add(p);
+            }
+        }
+        moving = next;
+        time = until;
+        windows++;
+        serialWindows++;
+    }
+
+    private static <T> List<T> collect(List<Future<T>> futures) throws InterruptedException {
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Error en una franja", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private static int partnerId(Obstacle obstacle) {
+        if (obstacle instanceof Particle other) {
+            return other.getId();
+        }
+        // Paredes: ids negativos
+        return -1 - ((Wall) obstacle).getType().ordinal();
+    }
+
+    public State snapshot() {
+        Set<Particle> particles = new HashSet<>();
+        for (Particle p : moving) {
+            particles.add(p.clone());
+        }
+        for (Particle p : statics) {
+            particles.add(p.clone());
+        }
+        return new State(time, walls, particles);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getWindows() {
+        return windows;
+    }
+
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    public long getSerialWindows() {
+        return serialWindows;
+    }
+
+    public int getStrips() {
+        return strips;
+    }
+}
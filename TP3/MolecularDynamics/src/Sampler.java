@@ -0,0 +1,122 @@
+import models.FutureCollision;
+import models.Obstacle;
+import models.particles.Particle;
+import models.walls.Wall;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/*
+    Guarda el sistema a intervalos fijos de tiempo físico (dt) en lugar de después de cada colisión, así el tamaño de
+    la salida depende del tiempo simulado y no de la tasa de colisiones. Entre dos eventos todas las partículas se
+    mueven en línea recta, entonces la posición al tiempo de la muestra se interpola desde su última actualización.
+
+    Las fotos se escriben en otro thread (SnapshotWriter): acá solo se copian los primitivos de cada partícula.
+    El log de eventos es opcional: una línea por colisión con el tiempo, la partícula y el obstáculo.
+ */
+public class Sampler implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final double dt;
+    private final SnapshotWriter writer;
+    private final BufferedWriter eventWriter;
+    private final StringBuilder line = new StringBuilder(64);
+    private long samples = 0;
+
+    public Sampler(Path filePath, int n, double dt) throws IOException {
+        this(filePath, n, dt, null, SnapshotWriter.Format.CSV);
+    }
+
+    public Sampler(Path filePath, int n, double dt, Path eventsPath, SnapshotWriter.Format format) throws IOException {
+        if (dt <= 0) {
+            throw new IllegalArgumentException("dt tiene que ser positivo: " + dt);
+        }
+        this.dt = dt;
+        this.writer = new SnapshotWriter(filePath, n, format);
+        if (eventsPath != null) {
+            this.eventWriter = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(eventsPath), StandardCharsets.UTF_8), BUFFER_SIZE);
+            this.eventWriter.write("time,particle,obstacle\n");
+        } else {
+            this.eventWriter = null;
+        }
+    }
+
+    /*
+        Escribe todas las muestras pendientes con tiempo <= until. Se llama antes de procesar el evento de tiempo until,
+        mientras las velocidades siguen siendo las de antes de la colisión.
+     */
+    public void sampleUntil(MolecularDynamicWithFixObstacle engine, double until) throws IOException {
+        if (Double.isInfinite(until)) {
+            throw new IllegalArgumentException("sampleUntil necesita un tiempo finito");
+        }
+        while (nextSampleTime() <= until) {
+            write(engine, nextSampleTime());
+            samples++;
+        }
+    }
+
+    private double nextSampleTime() {
+        // Multiplicamos en lugar de acumular dt para no arrastrar error de redondeo
+        return samples * dt;
+    }
+
+    private void write(MolecularDynamicWithFixObstacle engine, double t) throws IOException {
+        List<Particle> particles = engine.getParticles();
+        SnapshotWriter.Frame frame = writer.acquire(t, particles.size());
+        for (int i = 0; i < particles.size(); i++) {
+            Particle p = particles.get(i);
+            double elapsed = t - p.getLastUpdate();
+            frame.set(i, p.getId(),
+                    p.getPosition().getX() + p.getVelocity().getX() * elapsed,
+                    p.getPosition().getY() + p.getVelocity().getY() * elapsed,
+                    p.getVelocity().getX(), p.getVelocity().getY());
+        }
+        writer.publish(frame);
+    }
+
+    public void logEvent(FutureCollision event) throws IOException {
+        if (eventWriter == null) {
+            return;
+        }
+        line.setLength(0);
+        SnapshotWriter.appendFixed(line, event.getTc()).append(',').append(event.getParticle().getId()).append(',');
+        appendObstacle(line, event.getObstacle()).append('\n');
+        eventWriter.append(line);
+    }
+
+    private static StringBuilder appendObstacle(StringBuilder sb, Obstacle obstacle) {
+        if (obstacle instanceof Particle p) {
+            return sb.append(p.getId());
+        }
+        if (obstacle instanceof Wall w) {
+            return sb.append(w.getType());
+        }
+        return sb.append(obstacle);
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    public double getDt() {
+        return dt;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            if (eventWriter != null) {
+                eventWriter.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,331 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    Etapa de salida asíncrona para las fotos del motor de eventos. El thread de la simulación solo copia los
+    primitivos de cada partícula a un Frame y lo publica; el thread "snapshot-writer" los codifica (CSV o binario)
+    y los escribe a disco.
+
+    Los frames se reciclan: hay capacity frames en total, que circulan entre una cola de libres y una de llenos
+    (ConcurrentLinkedQueue, sin locks). Si el disco no da abasto se acaban los libres y acquire espera
+    (backpressure) en lugar de acumular memoria. Ninguno de los dos threads hace polling: el que espera se
+    duerme con LockSupport.park y el otro lo despierta al publicar o liberar un frame.
+
+    Formato binario (little endian):
+        Header: int MAGIC, int VERSION, int N
+        Frame:  double time, int n, int[n] id, double[n] x, y, vx, vy
+    El CSV tiene las mismas columnas que antes: time,id,x,y,vx,vy.
+ */
+public final class SnapshotWriter implements Closeable {
+
+    public enum Format { CSV, BINARY }
+
+    public static final int MAGIC = 0x4D445452;  // "MDTR"
+    public static final int VERSION = 1;
+
+    public static final class Frame {
+        double time;
+        int n;
+        int[] ids;
+        double[] x;
+        double[] y;
+        double[] vx;
+        double[] vy;
+
+        private Frame(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            ids = new int[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            vx = new double[capacity];
+            vy = new double[capacity];
+        }
+
+        public void set(int i, int id, double x, double y, double vx, double vy) {
+            this.ids[i] = id;
+            this.x[i] = x;
+            this.y[i] = y;
+            this.vx[i] = vx;
+            this.vy[i] = vy;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Format format;
+    private final Queue<Frame> free = new ConcurrentLinkedQueue<>();
+    private final Queue<Frame> filled = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    // Thread de la simulación mientras espera un frame libre en acquire (null si no está esperando)
+    private volatile Thread waiting;
+
+    private volatile boolean closing = false;
+    private volatile Exception error;
+    private volatile long frames = 0;
+
+    public SnapshotWriter(Path path, int n, Format format) throws IOException {
+        this(path, n, format, 64);
+    }
+
+    public SnapshotWriter(Path path, int n, Format format, int capacity) throws IOException {
+        this.format = format;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Frame(n));
+        }
+        this.worker = new Thread(() -> drain(n), "snapshot-writer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /*
+        Frame libre para llenar (con n partículas a tiempo time). Espera si todos están encolados para escribir.
+     */
+    public Frame acquire(double time, int n) throws IOException {
+        Frame frame = free.poll();
+        if (frame == null) {
+            waiting = Thread.currentThread();
+            // Se vuelve a mirar la cola después de anotarse, así no se pierde un frame liberado justo antes
+            while ((frame = free.poll()) == null) {
+                checkError();
+                LockSupport.park(this);
+            }
+            waiting = null;
+        }
+        checkError();
+        if (frame.ids.length < n) {
+            // Se agranda el mismo frame (reemplazarlo por uno nuevo achicaba el pool)
+            frame.allocate(n);
+        }
+        frame.time = time;
+        frame.n = n;
+        return frame;
+    }
+
+    public void publish(Frame frame) {
+        filled.add(frame);
+        LockSupport.unpark(worker);
+    }
+
+    private void drain(int n) {
+        try (Encoder encoder = format == Format.CSV ? new CsvEncoder(channel) : new BinaryEncoder(channel, n)) {
+            while (true) {
+                Frame frame = filled.poll();
+                if (frame == null) {
+                    if (closing && filled.isEmpty()) {
+                        return;
+                    }
+                    // publish y close hacen unpark; si llegó antes del park, park vuelve enseguida
+                    LockSupport.park(this);
+                    continue;
+                }
+                encoder.encode(frame);
+                frames++;
+                free.add(frame);
+                wakeProducer();
+            }
+        } catch (Exception e) {
+            error = e;
+            wakeProducer();
+        }
+    }
+
+    private void wakeProducer() {
+        Thread thread = waiting;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void checkError() throws IOException {
+        if (error != null) {
+            throw new IOException("Error en el thread de escritura", error);
+        }
+    }
+
+    /*
+        Espera a que se escriban todos los frames publicados y cierra el archivo.
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrumpido esperando al thread de escritura", e);
+        } finally {
+            channel.close();
+        }
+        checkError();
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    private interface Encoder extends Closeable {
+        void encode(Frame frame) throws IOException;
+    }
+
+    /*
+        Escribe el CSV directo como bytes ASCII en un buffer (sin StringBuilder ni codificación de chars).
+     */
+    private static final class CsvEncoder implements Encoder {
+
+        // Una línea entra siempre en este margen (6 números con a lo sumo ~25 caracteres cada uno)
+        private static final int LINE_BYTES = 256;
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        CsvEncoder(FileChannel channel) throws IOException {
+            this.channel = channel;
+            buffer.put("time,id,x,y,vx,vy\n".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        @Override
+        public void encode(Frame frame) throws IOException {
+            for (int i = 0; i < frame.n; i++) {
+                if (buffer.remaining() < LINE_BYTES) {
+                    flush();
+                }
+                putFixed(buffer, frame.time);
+                buffer.put((byte) ',');
+                putLong(buffer, frame.ids[i]);
+                buffer.put((byte) ',');
+                putFixed(buffer, frame.x[i]);
+                buffer.put((byte) ',');
+                putFixed(buffer, frame.y[i]);
+                buffer.put((byte) ',');
+                putFixed(buffer, frame.vx[i]);
+                buffer.put((byte) ',');
+                putFixed(buffer, frame.vy[i]);
+                buffer.put((byte) '\n');
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class BinaryEncoder implements Encoder {
+
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+
+        BinaryEncoder(FileChannel channel, int n) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(frameBytes(n)).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n);
+            flush();
+        }
+
+        static int frameBytes(int n) {
+            return Double.BYTES + Integer.BYTES + n * (Integer.BYTES + 4 * Double.BYTES);
+        }
+
+        @Override
+        public void encode(Frame frame) throws IOException {
+            if (buffer.capacity() < frameBytes(frame.n)) {
+                buffer = ByteBuffer.allocateDirect(frameBytes(frame.n)).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            buffer.putDouble(frame.time).putInt(frame.n);
+            for (int i = 0; i < frame.n; i++) buffer.putInt(frame.ids[i]);
+            for (int i = 0; i < frame.n; i++) buffer.putDouble(frame.x[i]);
+            for (int i = 0; i < frame.n; i++) buffer.putDouble(frame.y[i]);
+            for (int i = 0; i < frame.n; i++) buffer.putDouble(frame.vx[i]);
+            for (int i = 0; i < frame.n; i++) buffer.putDouble(frame.vy[i]);
+            flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /*
+        Equivalente a "%.6f" sin pasar por String.format (que era lo más caro de guardar cada partícula).
+     */
+    static StringBuilder appendFixed(StringBuilder sb, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e12) {
+            return sb.append(value);
+        }
+        long scaled = Math.round(Math.abs(value) * 1_000_000);
+        // Como "%.6f": el signo va aunque se redondee a cero (-1e-9 y -0.0 dan "-0.000000")
+        if (Math.copySign(1.0, value) < 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / 1_000_000).append('.');
+        long fraction = scaled % 1_000_000;
+        for (long digit = 100_000; digit > fraction && digit > 1; digit /= 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    /*
+        Lo mismo que appendFixed pero escribiendo bytes ASCII.
+     */
+    static void putFixed(ByteBuffer buffer, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e12) {
+            buffer.put(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long scaled = Math.round(Math.abs(value) * 1_000_000);
+        // Como "%.6f": el signo va aunque se redondee a cero (-1e-9 y -0.0 dan "-0.000000")
+        if (Math.copySign(1.0, value) < 0) {
+            buffer.put((byte) '-');
+        }
+        putLong(buffer, scaled / 1_000_000);
+        buffer.put((byte) '.');
+        long fraction = scaled % 1_000_000;
+        for (long digit = 100_000; digit >= 1; digit /= 10) {
+            buffer.put((byte) ('0' + (fraction / digit) % 10));
+        }
+    }
+
+    static void putLong(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long digit = 1;
+        while (digit <= value / 10) {
+            digit *= 10;
+        }
+        for (; digit >= 1; digit /= 10) {
+            buffer.put((byte) ('0' + (value / digit) % 10));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/*
+    Cuándo cortar una corrida del motor de eventos. Los límites son sobre la física (cantidad de eventos, tiempo
+    simulado o convergencia de un observable), no sobre el reloj de la máquina, así dos corridas con la misma
+    condición calculan lo mismo y se pueden comparar; lo que se mide aparte es cuánto tardan (eventos por segundo).
+
+    Se consulta después de cada colisión con la cantidad de colisiones procesadas hasta el momento.
+ */
+public interface StopCondition {
+
+    boolean shouldStop(MolecularDynamicWithFixObstacle engine, long events);
+
+    static StopCondition events(long maxEvents) {
+        return (engine, events) -> events >= maxEvents;
+    }
+
+    static StopCondition simulatedTime(double maxTime) {
+        return (engine, events) -> engine.getTime() >= maxTime;
+    }
+
+    /*
+        Corta cuando se cumple cualquiera de las condiciones (por ejemplo convergencia con un máximo de eventos).
+     */
+    static StopCondition any(StopCondition... conditions) {
+        List<StopCondition> all = List.of(conditions);
+        return (engine, events) -> {
+            for (StopCondition condition : all) {
+                if (condition.shouldStop(engine, events)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /*
+        Mide el observable cada every eventos y corta cuando el promedio de las últimas window mediciones difiere
+        del promedio de las window anteriores en menos de tolerance * max(|promedio|, scale). scale es la magnitud
+        típica del observable: sin ese piso, uno de media cerca de cero (una componente del momento, una fuerza
+        media) no converge nunca en términos relativos.
+     */
+    static StopCondition converged(ToDoubleFunction<MolecularDynamicWithFixObstacle> observable, long every, int window, double tolerance, double scale) {
+        return new Convergence(observable, every, window, tolerance, scale);
+    }
+
+    /*
+        Igual pero solo relativo (scale = 0), para observables que no se acercan a cero.
+     */
+    static StopCondition converged(ToDoubleFunction<MolecularDynamicWithFixObstacle> observable, long every, int window, double tolerance) {
+        return converged(observable, every, window, tolerance, 0);
+    }
+
+    final class Convergence implements StopCondition {
+
+        private final ToDoubleFunction<MolecularDynamicWithFixObstacle> observable;
+        private final long every;
+        private final int window;
+        private final double tolerance;
+        private final double scale;
+
+        private double previousMean = Double.NaN;
+        private double sum = 0;
+        private int count = 0;
+
+        private Convergence(ToDoubleFunction<MolecularDynamicWithFixObstacle> observable, long every, int window, double tolerance, double scale) {
+            this.observable = observable;
+            this.every = every;
+            this.window = window;
+            this.tolerance = tolerance;
+            this.scale = scale;
+        }
+
+        @Override
+        public boolean shouldStop(MolecularDynamicWithFixObstacle engine, long events) {
+            // Antes del primer evento no hay nada que promediar todavía
+            if (events == 0 || events % every != 0) {
+                return false;
+            }
+            sum += observable.applyAsDouble(engine);
+            count++;
+            if (count < window) {
+                return false;
+            }
+            double mean = sum / count;
+            sum = 0;
+            count = 0;
+            boolean converged = !Double.isNaN(previousMean) && Math.abs(mean - previousMean) <= tolerance * Math.max(Math.abs(previousMean), scale);
+            previousMean = mean;
+            return converged;
+        }
+    }
+}
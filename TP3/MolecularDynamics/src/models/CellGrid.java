@@ -0,0 +1,209 @@
+package models;
+
+import models.particles.Particle;
+import models.particles.Position;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+    Grilla de celdas sobre la caja L x L para predecir colisiones solo contra las partículas de las 9 celdas vecinas.
+    El lado de la celda es >= al mayor diámetro de contacto, así dos partículas solo pueden chocar estando en celdas
+    vecinas. Cuando una partícula cambia de celda hay un evento de cruce (la grilla es el obstáculo de ese evento):
+    se la cambia de celda y se predicen sus colisiones con los vecinos nuevos.
+
+    En modo periódico las celdas de los bordes son vecinas de las del borde opuesto y salir de la caja es un cruce más:
+    cross además traslada a la partícula en ±L (condición de contorno periódica).
+ */
+public class CellGrid implements Obstacle {
+
+    private final double l;
+    private final int m;
+    private final double cellSize;
+    private final boolean periodic;
+    // Las listas se crean recién cuando una partícula entra a la celda (con pocas partículas en una caja grande,
+    // como en cada franja de ParallelMolecularDynamic, la mayoría de las celdas quedan vacías)
+    private final List<Particle>[] cells;
+    private int[] cellOf = new int[0];
+
+    public CellGrid(double l, double contactDistance) {
+        this(l, Math.max(1, (int) Math.floor(l / contactDistance)), false);
+    }
+
+    public CellGrid(double l, int m, boolean periodic) {
+        if (periodic && m < 3) {
+            throw new IllegalArgumentException("Una grilla periódica necesita al menos 3 celdas por lado: " + m);
+        }
+        this.l = l;
+        this.m = m;
+        this.periodic = periodic;
+        this.cellSize = l / m;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Particle>[] cells = new ArrayList[m * m];
+        this.cells = cells;
+    }
+
+    private List<Particle> cell(int index) {
+        if (cells[index] == null) {
+            cells[index] = new ArrayList<>();
+        }
+        return cells[index];
+    }
+
+    private void addCell(List<Particle> neighbours, int index) {
+        if (cells[index] != null) {
+            neighbours.addAll(cells[index]);
+        }
+    }
+
+    public void add(Particle p) {
+        ensureCapacity(p.getId());
+        int cx = clamp((int) (p.getPosition().getX() / cellSize));
+        int cy = clamp((int) (p.getPosition().getY() / cellSize));
+        int cell = cy * m + cx;
+        cellOf[p.getId()] = cell;
+        cell(cell).add(p);
+    }
+
+    /*
+        Vuelve a ubicar a p según su posición (cuando se la movió fuera de los eventos, ver DriftMonitor).
+     */
+    public void update(Particle p) {
+        cells[cellOf[p.getId()]].remove(p);
+        add(p);
+    }
+
+    public void addAll(Collection<Particle> particles) {
+        for (Particle p : particles) {
+            add(p);
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= cellOf.length) {
+            int[] bigger = new int[Math.max(id + 1, 2 * cellOf.length)];
+            System.arraycopy(cellOf, 0, bigger, 0, cellOf.length);
+            cellOf = bigger;
+        }
+    }
+
+    private int clamp(int c) {
+        return Math.max(0, Math.min(m - 1, c));
+    }
+
+    /*
+        Partículas de las 9 celdas alrededor de la celda de p (incluida p).
+     */
+    public List<Particle> neighbours(Particle p) {
+        return neighbours(p, new ArrayList<>());
+    }
+
+    /*
+        Igual que neighbours(p) pero reutilizando la lista neighbours (se vacía antes de llenarla).
+     */
+    public List<Particle> neighbours(Particle p, List<Particle> neighbours) {
+        neighbours.clear();
+        int cell = cellOf[p.getId()];
+        int cx = cell % m;
+        int cy = cell / m;
+        if (periodic) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    addCell(neighbours, Math.floorMod(cy + dy, m) * m + Math.floorMod(cx + dx, m));
+                }
+            }
+            return neighbours;
+        }
+        for (int y = Math.max(0, cy - 1); y <= Math.min(m - 1, cy + 1); y++) {
+            for (int x = Math.max(0, cx - 1); x <= Math.min(m - 1, cx + 1); x++) {
+                addCell(neighbours, y * m + x);
+            }
+        }
+        return neighbours;
+    }
+
+    /*
+        Tiempo hasta que p sale de su celda (infinito si solo puede salir contra una pared).
+     */
+    @Override
+    public double timeToCollide(Particle p) {
+        int cell = cellOf[p.getId()];
+        double tx = axisTime(cell % m, p.getPosition().getX(), p.getVelocity().getX());
+        double ty = axisTime(cell / m, p.getPosition().getY(), p.getVelocity().getY());
+        return Math.max(0, Math.min(tx, ty));
+    }
+
+    private double axisTime(int c, double position, double velocity) {
+        if (velocity > 0 && (periodic || c < m - 1)) {
+            return ((c + 1) * cellSize - position) / velocity;
+        }
+        if (velocity < 0 && (periodic || c > 0)) {
+            return (c * cellSize - position) / velocity;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /*
+        Pasa a p a la celda vecina por el eje por el que está saliendo (el de menor tiempo de salida).
+     */
+    public void cross(Particle p) {
+        int cell = cellOf[p.getId()];
+        int cx = cell % m;
+        int cy = cell / m;
+        double tx = axisTime(cx, p.getPosition().getX(), p.getVelocity().getX());
+        double ty = axisTime(cy, p.getPosition().getY(), p.getVelocity().getY());
+        if (tx <= ty) {
+            cx += p.getVelocity().getX() > 0 ? 1 : -1;
+        } else {
+            cy += p.getVelocity().getY() > 0 ? 1 : -1;
+        }
+        if (periodic && (cx < 0 || cx >= m || cy < 0 || cy >= m)) {
+            // Salió de la caja: entra por el lado opuesto
+            double x = p.getPosition().getX() - l * Math.floorDiv(cx, m);
+            double y = p.getPosition().getY() - l * Math.floorDiv(cy, m);
+            p.setPosition(new Position(x, y));
+            cx = Math.floorMod(cx, m);
+            cy = Math.floorMod(cy, m);
+        }
+        int next = cy * m + cx;
+        cells[cell].remove(p);
+        cell(next).add(p);
+        cellOf[p.getId()] = next;
+    }
+
+    /*
+        Imagen mínima de una diferencia de coordenadas (sin cambios si la grilla no es periódica).
+     */
+    public double minimumImage(double delta) {
+        return periodic ? delta - l * Math.rint(delta / l) : delta;
+    }
+
+    /*
+        Índice (cy * m + cx) de la celda donde está p.
+     */
+    public int cellOf(Particle p) {
+        return cellOf[p.getId()];
+    }
+
+    public boolean isPeriodic() {
+        return periodic;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public double getL() {
+        return l;
+    }
+
+    @Override
+    public String toString() {
+        return "CellGrid";
+    }
+}
@@ -0,0 +1,51 @@
+package models;
+
+/*
+    Tiempo de colisión entre discos duros en primitivos: sin Pair, sin Math.pow, sin objetos intermedios.
+    time es el caso de un par; earliest resuelve una partícula contra un bloque de candidatos guardados por columnas
+    (x, y, vx, vy, r), en un loop cerrado sobre arrays que el JIT puede desenrollar/vectorizar.
+ */
+public final class CollisionKernel {
+
+    private CollisionKernel() {
+    }
+
+    /*
+        Tiempo hasta que dos discos a distancia (dx, dy) con velocidad relativa (dvx, dvy) quedan a distancia sigma.
+        Infinito si no se acercan o no llegan a tocarse.
+     */
+    public static double time(double dx, double dy, double dvx, double dvy, double sigma) {
+        double dvdr = dvx * dx + dvy * dy;
+        if (dvdr >= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double dv2 = dvx * dvx + dvy * dvy;
+        double dr2 = dx * dx + dy * dy;
+        double d = dvdr * dvdr - dv2 * (dr2 - sigma * sigma);
+        if (d < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double t = -(dvdr + Math.sqrt(d)) / dv2;
+        return t > 0 ? t : Double.POSITIVE_INFINITY;
+    }
+
+    /*
+        Calcula en times[k] el tiempo de colisión de la partícula (x, y, vx, vy, r) con cada candidato k de [from, to)
+        y devuelve el índice del más cercano (-1 si ninguno choca). El tiempo de ese choque queda en times[índice].
+     */
+    public static int earliest(double x, double y, double vx, double vy, double r,
+                               double[] xs, double[] ys, double[] vxs, double[] vys, double[] rs,
+                               int from, int to, double[] times) {
+        int best = -1;
+        double bestTime = Double.POSITIVE_INFINITY;
+        for (int k = from; k < to; k++) {
+            double t = time(xs[k] - x, ys[k] - y, vxs[k] - vx, vys[k] - vy, rs[k] + r);
+            times[k] = t;
+            if (t < bestTime) {
+                bestTime = t;
+                best = k;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,295 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+    Posiciones iniciales sin superposición para count discos de radio r dentro de un rectángulo width x height,
+    evitando además los obstáculos fijos (addObstacle).
+
+    Primero se prueba adición secuencial al azar, chequeando superposición solo contra las celdas vecinas de una
+    grilla (celda >= 2r), así cada intento es O(1) en lugar de O(N). Si la fracción pedida es alta (la adición al
+    azar se traba cerca de 0.547) o un disco no entra después de MAX_ATTEMPTS intentos, se arma una red triangular
+    con el mayor espaciado que alcance y se desordena con desplazamientos Monte Carlo de discos duros
+    (un movimiento se acepta si no superpone), que es lo mismo que dejarlos chocar un rato.
+    Los obstáculos van en su propia grilla (celda >= radio del obstáculo más grande + r), así que pueden ser miles.
+
+    Este archivo es el mismo en TP3 (models.DiskPlacer) y en TP5 (utils.DiskPlacer, la copia): son proyectos
+    separados, sin código compartido. Las dos versiones son idénticas salvo la línea del package; un cambio va en las dos.
+ */
+public class DiskPlacer {
+
+    private static final int MAX_ATTEMPTS = 10_000;
+    private static final double RANDOM_LIMIT = 0.45;
+    private static final int SHAKE_SWEEPS = 50;
+
+    private final double width;
+    private final double height;
+    private final Random random;
+    private final List<double[]> obstacles = new ArrayList<>();
+
+    private double r;
+    private int count;
+    private double[] x = new double[0];
+    private double[] y = new double[0];
+    private boolean lattice;
+
+    // Grilla: head[celda] = primer disco, next[disco] = siguiente de la misma celda (-1 = fin)
+    private int mx;
+    private int my;
+    private double cellWidth;
+    private double cellHeight;
+    private int[] head;
+    private int[] next;
+    private int[] cellOf;
+
+    // Grilla de obstáculos, igual que la de discos
+    private int ox;
+    private int oy;
+    private double obstacleCellWidth;
+    private double obstacleCellHeight;
+    private int[] obstacleHead;
+    private int[] obstacleNext;
+
+    public DiskPlacer(double width, double height, Random random) {
+        this.width = width;
+        this.height = height;
+        this.random = random;
+    }
+
+    public DiskPlacer addObstacle(double x, double y, double radius) {
+        obstacles.add(new double[]{ x, y, radius });
+        return this;
+    }
+
+    public void place(int count, double radius) {
+        this.count = count;
+        this.r = radius;
+        this.x = new double[count];
+        this.y = new double[count];
+        this.lattice = false;
+        initObstacleGrid();
+        initGrid(count);
+
+        if (packingFraction(count) <= RANDOM_LIMIT && placeRandomly()) {
+            return;
+        }
+        lattice = true;
+        initGrid(count);
+        placeOnLattice();
+        shake();
+    }
+
+    private boolean placeRandomly() {
+        for (int i = 0; i < count; i++) {
+            int attempts = 0;
+            do {
+                if (++attempts > MAX_ATTEMPTS) {
+                    return false;
+                }
+                x[i] = r + random.nextDouble() * (width - 2 * r);
+                y[i] = r + random.nextDouble() * (height - 2 * r);
+            } while (overlaps(i, x[i], y[i]));
+            insert(i);
+        }
+        return true;
+    }
+
+    /*
+        Red triangular: se busca (bisección) el mayor espaciado con al menos count sitios libres y se eligen count
+        sitios al azar.
+     */
+    private void placeOnLattice() {
+        double low = 2 * r;
+        double high = Math.max(width, height);
+        if (latticeSites(low).size() < count) {
+            throw new IllegalArgumentException("No entran %d discos de radio %f en %f x %f".formatted(count, r, width, height));
+        }
+        for (int iteration = 0; iteration < 60; iteration++) {
+            double middle = (low + high) / 2;
+            if (latticeSites(middle).size() >= count) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        List<double[]> sites = latticeSites(low);
+        for (int i = 0; i < count; i++) {
+            int k = i + random.nextInt(sites.size() - i);
+            double[] site = sites.get(k);
+            sites.set(k, sites.get(i));
+            x[i] = site[0];
+            y[i] = site[1];
+            insert(i);
+        }
+    }
+
+    private List<double[]> latticeSites(double spacing) {
+        List<double[]> sites = new ArrayList<>();
+        double rowHeight = spacing * Math.sqrt(3) / 2;
+        int row = 0;
+        for (double sy = r; sy <= height - r; sy += rowHeight, row++) {
+            for (double sx = r + (row % 2) * spacing / 2; sx <= width - r; sx += spacing) {
+                if (!overlapsObstacle(sx, sy)) {
+                    sites.add(new double[]{ sx, sy });
+                }
+            }
+        }
+        return sites;
+    }
+
+    private void shake() {
+        double step = r;
+        for (int sweep = 0; sweep < SHAKE_SWEEPS; sweep++) {
+            int accepted = 0;
+            for (int i = 0; i < count; i++) {
+                double nx = x[i] + (2 * random.nextDouble() - 1) * step;
+                double ny = y[i] + (2 * random.nextDouble() - 1) * step;
+                if (nx < r || nx > width - r || ny < r || ny > height - r || overlaps(i, nx, ny)) {
+                    continue;
+                }
+                remove(i);
+                x[i] = nx;
+                y[i] = ny;
+                insert(i);
+                accepted++;
+            }
+            // Paso adaptativo para aceptar alrededor de la mitad de los movimientos
+            step *= accepted > count / 2 ? 1.1 : 0.9;
+        }
+    }
+
+    private boolean overlaps(int i, double px, double py) {
+        if (overlapsObstacle(px, py)) {
+            return true;
+        }
+        int cx = cellX(px);
+        int cy = cellY(py);
+        double sigma2 = 4 * r * r;
+        for (int ny = Math.max(0, cy - 1); ny <= Math.min(my - 1, cy + 1); ny++) {
+            for (int nx = Math.max(0, cx - 1); nx <= Math.min(mx - 1, cx + 1); nx++) {
+                for (int j = head[ny * mx + nx]; j >= 0; j = next[j]) {
+                    if (j == i) continue;
+                    double dx = x[j] - px;
+                    double dy = y[j] - py;
+                    if (dx * dx + dy * dy < sigma2) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean overlapsObstacle(double px, double py) {
+        if (obstacles.isEmpty()) {
+            return false;
+        }
+        int cx = Math.max(0, Math.min(ox - 1, (int) (px / obstacleCellWidth)));
+        int cy = Math.max(0, Math.min(oy - 1, (int) (py / obstacleCellHeight)));
+        for (int ny = Math.max(0, cy - 1); ny <= Math.min(oy - 1, cy + 1); ny++) {
+            for (int nx = Math.max(0, cx - 1); nx <= Math.min(ox - 1, cx + 1); nx++) {
+                for (int j = obstacleHead[ny * ox + nx]; j >= 0; j = obstacleNext[j]) {
+                    double[] obstacle = obstacles.get(j);
+                    double dx = obstacle[0] - px;
+                    double dy = obstacle[1] - py;
+                    double sigma = obstacle[2] + r;
+                    if (dx * dx + dy * dy < sigma * sigma) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void initObstacleGrid() {
+        double maxRadius = 0;
+        for (double[] obstacle : obstacles) {
+            maxRadius = Math.max(maxRadius, obstacle[2]);
+        }
+        ox = Math.max(1, (int) (width / (maxRadius + r)));
+        oy = Math.max(1, (int) (height / (maxRadius + r)));
+        obstacleCellWidth = width / ox;
+        obstacleCellHeight = height / oy;
+        obstacleHead = new int[ox * oy];
+        Arrays.fill(obstacleHead, -1);
+        obstacleNext = new int[obstacles.size()];
+        for (int j = 0; j < obstacles.size(); j++) {
+            double[] obstacle = obstacles.get(j);
+            int cx = Math.max(0, Math.min(ox - 1, (int) (obstacle[0] / obstacleCellWidth)));
+            int cy = Math.max(0, Math.min(oy - 1, (int) (obstacle[1] / obstacleCellHeight)));
+            obstacleNext[j] = obstacleHead[cy * ox + cx];
+            obstacleHead[cy * ox + cx] = j;
+        }
+    }
+
+    private void initGrid(int count) {
+        mx = Math.max(1, (int) (width / (2 * r)));
+        my = Math.max(1, (int) (height / (2 * r)));
+        cellWidth = width / mx;
+        cellHeight = height / my;
+        head = new int[mx * my];
+        Arrays.fill(head, -1);
+        next = new int[count];
+        cellOf = new int[count];
+    }
+
+    private int cellX(double px) {
+        return Math.max(0, Math.min(mx - 1, (int) (px / cellWidth)));
+    }
+
+    private int cellY(double py) {
+        return Math.max(0, Math.min(my - 1, (int) (py / cellHeight)));
+    }
+
+    private void insert(int i) {
+        int cell = cellY(y[i]) * mx + cellX(x[i]);
+        cellOf[i] = cell;
+        next[i] = head[cell];
+        head[cell] = i;
+    }
+
+    private void remove(int i) {
+        int cell = cellOf[i];
+        if (head[cell] == i) {
+            head[cell] = next[i];
+            return;
+        }
+        for (int j = head[cell]; j >= 0; j = next[j]) {
+            if (next[j] == i) {
+                next[j] = next[i];
+                return;
+            }
+        }
+    }
+
+    private double packingFraction(int disks) {
+        double area = disks * Math.PI * r * r;
+        for (double[] obstacle : obstacles) {
+            area += Math.PI * obstacle[2] * obstacle[2];
+        }
+        return area / (width * height);
+    }
+
+    /*
+        Fracción del rectángulo ocupada por los discos colocados y los obstáculos.
+     */
+    public double getPackingFraction() {
+        return packingFraction(count);
+    }
+
+    public boolean usedLattice() {
+        return lattice;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+}
@@ -18,8 +18,17 @@ public class Event {
     }
 
     public static void applyCollision(Particle p1, Particle p2) {
-        double deltaX = p1.getPosition().getX() - p2.getPosition().getX();
-        double deltaY = p1.getPosition().getY() - p2.getPosition().getY();
+        applyCollision(p1, p2, p1.getPosition().getX() - p2.getPosition().getX(), p1.getPosition().getY() - p2.getPosition().getY());
+    }
+
+    /*
+        Choque con la separación (deltaX, deltaY) = p1 - p2 dada explícitamente (en la caja periódica es la imagen mínima).
+     */
+    public static void applyCollision(Particle p1, Particle p2, double deltaX, double deltaY) {
+        if (p2 instanceof StaticParticle sp) {
+            applyCollision(p1, sp, deltaX, deltaY);
+            return;
+        }
         double sigma = p1.getRadius() + p2.getRadius();
         double deltaVX = p1.getVelocity().getX() - p2.getVelocity().getX();
         double deltaVY = p1.getVelocity().getY() - p2.getVelocity().getY();
@@ -33,27 +42,29 @@ public class Event {
         double Jx = (J * deltaX) / sigma;
         double Jy = (J * deltaY) / sigma;
 
-        // Velocidades de la partícula actual (p2)
+        // deltaX/deltaY van de p2 a p1, así que el impulso sobre p1 es -J (y +J sobre p2).
         p1.setVelocity(new Velocity(
-                p1.getVelocity().getX() + Jx / m1,
-                p1.getVelocity().getY() + Jy / m1));
+                p1.getVelocity().getX() - Jx / m1,
+                p1.getVelocity().getY() - Jy / m1));
         p2.setVelocity(new Velocity(
-                p2.getVelocity().getX() - Jx / m2,
-                p2.getVelocity().getY() - Jy / m2));
+                p2.getVelocity().getX() + Jx / m2,
+                p2.getVelocity().getY() + Jy / m2));
     }
 
     public static void applyCollision(Particle p1, StaticParticle p2) {
-        double deltaX = p1.getPosition().getX() - p2.getPosition().getX();
-        double deltaY = p1.getPosition().getY() - p2.getPosition().getY();
+        applyCollision(p1, p2, p1.getPosition().getX() - p2.getPosition().getX(), p1.getPosition().getY() - p2.getPosition().getY());
+    }
+
+    public static void applyCollision(Particle p1, StaticParticle p2, double deltaX, double deltaY) {
         double sigma = p1.getRadius() + p2.getRadius();
         double deltaVX = p1.getVelocity().getX() - p2.getVelocity().getX();
         double deltaVY = p1.getVelocity().getY() - p2.getVelocity().getY();
 
         double deltas = deltaVX * deltaX + deltaVY * deltaY;
         double m1 = p1.getMass();
-        double m2 = p2.getMass();
 
-        double J = (2 * m1 * m2 * deltas) / (sigma * (m1 + m2));
+        // Obstáculo fijo = masa infinita: J = 2 * m1 * deltas / sigma (reflexión de la componente normal).
+        double J = (2 * m1 * deltas) / sigma;
 
         double Jx = (J * deltaX) / sigma;
         double Jy = (J * deltaY) / sigma;
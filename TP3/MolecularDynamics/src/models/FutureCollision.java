@@ -10,10 +10,20 @@ public class FutureCollision implements Comparable<FutureCollision> {
     private Particle particle;
     private Obstacle obstacle;
 
+    // Colisiones de cada parte al momento de predecir el evento: si alguna cambió, el evento ya no es válido.
+    private int particleCount;
+    private int obstacleCount;
+
     public FutureCollision(double tc, Particle particle, Obstacle obstacle) {
         this.tc = tc;
         this.particle = particle;
         this.obstacle = obstacle;
+        this.particleCount = particle.getCollisionCount();
+        this.obstacleCount = obstacle.getCollisionCount();
+    }
+
+    public boolean isValid() {
+        return particleCount == particle.getCollisionCount() && obstacleCount == obstacle.getCollisionCount();
     }
 
     @Override
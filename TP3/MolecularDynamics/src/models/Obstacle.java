@@ -6,4 +6,9 @@ public interface Obstacle {
 
     double timeToCollide(Particle particle);
 
+    /* Cantidad de colisiones en las que cambió la velocidad de este obstáculo (las paredes nunca cambian). */
+    default int getCollisionCount() {
+        return 0;
+    }
+
 }
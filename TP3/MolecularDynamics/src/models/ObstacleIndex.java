@@ -0,0 +1,83 @@
+package models;
+
+import models.particles.Particle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+    Índice estático de los obstáculos fijos sobre las celdas de una CellGrid: para cada celda, los obstáculos con
+    los que puede chocar una partícula (de radio <= reach) mientras su centro está dentro de esa celda, es decir los
+    que están a menos de radio + reach del rectángulo de la celda.
+
+    Como el motor vuelve a predecir a la partícula cada vez que cruza de celda, alcanza con predecir contra la lista
+    de su celda actual: con obstáculos de tamaño acotado eso es O(1) por predicción, no O(obstáculos).
+    Los obstáculos no se mueven, así que el índice se arma una sola vez.
+ */
+public class ObstacleIndex {
+
+    // Margen para que una partícula justo sobre el borde de la celda (error de redondeo del cruce) no pierda candidatos
+    private static final double EPSILON = 1e-9;
+
+    private final CellGrid grid;
+    // null = ninguno (la mayoría de las celdas, con pocos obstáculos)
+    private final List<Particle>[] byCell;
+    private final int size;
+
+    public ObstacleIndex(CellGrid grid, Collection<Particle> obstacles, double reach) {
+        this.grid = grid;
+        this.size = obstacles.size();
+        int m = grid.getM();
+        double cellSize = grid.getCellSize();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<Particle>[] byCell = new ArrayList[m * m];
+        this.byCell = byCell;
+
+        for (Particle obstacle : obstacles) {
+            double x = obstacle.getPosition().getX();
+            double y = obstacle.getPosition().getY();
+            double distance = obstacle.getRadius() + reach + EPSILON;
+            int fromX = (int) Math.floor((x - distance) / cellSize);
+            int toX = (int) Math.floor((x + distance) / cellSize);
+            int fromY = (int) Math.floor((y - distance) / cellSize);
+            int toY = (int) Math.floor((y + distance) / cellSize);
+            if (grid.isPeriodic()) {
+                // Más de m celdas repetiría celdas (el obstáculo ya las cubre todas en ese eje)
+                toX = Math.min(toX, fromX + m - 1);
+                toY = Math.min(toY, fromY + m - 1);
+            } else {
+                fromX = Math.max(0, fromX);
+                fromY = Math.max(0, fromY);
+                toX = Math.min(m - 1, toX);
+                toY = Math.min(m - 1, toY);
+            }
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int cx = fromX; cx <= toX; cx++) {
+                    // Distancia del centro del obstáculo al rectángulo de la celda (sin envolver: cx, cy pueden salir de [0, m))
+                    double dx = Math.max(0, Math.max(cx * cellSize - x, x - (cx + 1) * cellSize));
+                    double dy = Math.max(0, Math.max(cy * cellSize - y, y - (cy + 1) * cellSize));
+                    if (dx * dx + dy * dy < distance * distance) {
+                        int cell = Math.floorMod(cy, m) * m + Math.floorMod(cx, m);
+                        if (byCell[cell] == null) {
+                            byCell[cell] = new ArrayList<>();
+                        }
+                        byCell[cell].add(obstacle);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        Obstáculos con los que p puede chocar antes de salir de su celda actual (no copiar ni modificar la lista).
+     */
+    public List<Particle> near(Particle p) {
+        List<Particle> obstacles = byCell[grid.cellOf(p)];
+        return obstacles == null ? List.of() : obstacles;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,200 @@
+package models;
+
+import models.particles.Particle;
+import models.particles.StaticParticle;
+import models.walls.Wall;
+import models.walls.WallType;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    Impulso transferido a las paredes y a los obstáculos, acumulado mientras se procesan los eventos.
+    Cada canal (una pared o todos los obstáculos juntos) tiene un buffer circular de bins de ancho binWidth: se guardan
+    los últimos capacity bins, no cada colisión. La presión de un intervalo es impulso / (tiempo * longitud de contacto).
+
+    Obstáculos son las StaticParticle y las partículas con id < obstacles (obstáculos móviles). Además del canal
+    STATIC, cada obstáculo lleva el total de su impulso normal y del vectorial (fuerza media = impulso / tiempo).
+    Los choques entre dos obstáculos no cuentan (no son presión del gas).
+ */
+public class PressureAccumulator {
+
+    public static final int STATIC = WallType.values().length;
+    private static final int CHANNELS = STATIC + 1;
+
+    private final double binWidth;
+    private final int capacity;
+    private final double[][] impulse;
+    private final double[] totals = new double[CHANNELS];
+
+    private final int obstacles;
+    // Período de la caja (0 si tiene paredes), para la dirección del choque con imagen mínima
+    private final double period;
+    private final double[] obstacleImpulse;
+    private final double[] obstacleImpulseX;
+    private final double[] obstacleImpulseY;
+
+    // Bin absoluto (tiempo / binWidth) del último evento registrado; los bins head - capacity + 1 .. head están en el buffer
+    private long head = 0;
+    private double time = 0;
+
+    public PressureAccumulator(double binWidth, int capacity) {
+        this(binWidth, capacity, 0, 0);
+    }
+
+    public PressureAccumulator(double binWidth, int capacity, int obstacles, double period) {
+        this.binWidth = binWidth;
+        this.capacity = capacity;
+        this.impulse = new double[CHANNELS][capacity];
+        this.obstacles = obstacles;
+        this.period = period;
+        this.obstacleImpulse = new double[obstacles];
+        this.obstacleImpulseX = new double[obstacles];
+        this.obstacleImpulseY = new double[obstacles];
+    }
+
+    /*
+        Registra un evento ya aplicado (el motor lo devuelve con las velocidades de después del choque).
+        Los choques entre partículas no transfieren impulso al recipiente, solo avanzan el tiempo.
+     */
+    public void record(FutureCollision event) {
+        advanceTo(event.getTc());
+        Particle particle = event.getParticle();
+        Obstacle obstacle = event.getObstacle();
+        if (obstacle instanceof Wall wall) {
+            add(wall.getType().ordinal(), wall.getMomentum(particle));
+        } else if (obstacle instanceof Particle other) {
+            if (isObstacle(other) && !isObstacle(particle)) {
+                recordObstacle(other, particle);
+            } else if (isObstacle(particle) && !isObstacle(other)) {
+                recordObstacle(particle, other);
+            }
+        }
+    }
+
+    private boolean isObstacle(Particle p) {
+        return p instanceof StaticParticle || p.getId() < obstacles;
+    }
+
+    /*
+        Impulso recibido por target en el choque con source: 2 * mu * |v_n| (velocidad relativa normal, mu la masa
+        reducida; para un obstáculo fijo mu = masa de source), en la dirección de source a target.
+     */
+    private void recordObstacle(Particle target, Particle source) {
+        double deltaX = minimumImage(target.getPosition().getX() - source.getPosition().getX());
+        double deltaY = minimumImage(target.getPosition().getY() - source.getPosition().getY());
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        double relativeVx = source.getVelocity().getX() - target.getVelocity().getX();
+        double relativeVy = source.getVelocity().getY() - target.getVelocity().getY();
+        double velocityNormal = (relativeVx * deltaX + relativeVy * deltaY) / distance;
+        double reducedMass = target instanceof StaticParticle
+                ? source.getMass()
+                : source.getMass() * target.getMass() / (source.getMass() + target.getMass());
+        double momentum = 2 * reducedMass * Math.abs(velocityNormal);
+
+        add(STATIC, momentum);
+        int id = target.getId();
+        if (id < obstacles) {
+            obstacleImpulse[id] += momentum;
+            obstacleImpulseX[id] += momentum * deltaX / distance;
+            obstacleImpulseY[id] += momentum * deltaY / distance;
+        }
+    }
+
+    private double minimumImage(double delta) {
+        return period > 0 ? delta - period * Math.rint(delta / period) : delta;
+    }
+
+    private void advanceTo(double eventTime) {
+        long bin = (long) (eventTime / binWidth);
+        // Los bins que se saltean quedan en cero (si son más que capacity alcanza con limpiar todo el buffer)
+        for (long b = head + 1; b <= Math.min(bin, head + capacity); b++) {
+            int slot = (int) (b % capacity);
+            for (double[] channel : impulse) {
+                channel[slot] = 0;
+            }
+        }
+        head = Math.max(head, bin);
+        time = Math.max(time, eventTime);
+    }
+
+    private void add(int channel, double momentum) {
+        impulse[channel][(int) (head % capacity)] += momentum;
+        totals[channel] += momentum;
+    }
+
+    /*
+        Presión por intervalo de ancho deltaTime (se redondea a un múltiplo de binWidth) sumando los canales indicados,
+        sobre la longitud de contacto length. Solo intervalos completos y todavía en el buffer. O(bins).
+     */
+    public Map<Double, Double> pressure(double deltaTime, double length, int... channels) {
+        int k = Math.max(1, (int) Math.round(deltaTime / binWidth));
+        double interval = k * binWidth;
+        long firstBin = Math.max(0, head - capacity + 1);
+        long firstGroup = (firstBin + k - 1) / k;
+        // El bin head sigue abierto: el último intervalo completo termina antes
+        long endGroup = head / k;
+
+        Map<Double, Double> pressureByTime = new TreeMap<>();
+        for (long group = firstGroup; group < endGroup; group++) {
+            double sum = 0;
+            for (long b = group * k; b < (group + 1) * k; b++) {
+                int slot = (int) (b % capacity);
+                for (int channel : channels) {
+                    sum += impulse[channel][slot];
+                }
+            }
+            pressureByTime.put(group * interval, sum / (interval * length));
+        }
+        return pressureByTime;
+    }
+
+    /*
+        Presión promedio de todo el run (no depende del tamaño del buffer).
+     */
+    public double averagePressure(double length, int... channels) {
+        double sum = 0;
+        for (int channel : channels) {
+            sum += totals[channel];
+        }
+        return time == 0 ? 0 : sum / (time * length);
+    }
+
+    /*
+        Presión media sobre el obstáculo id (de radio radius) en todo el run.
+     */
+    public double obstaclePressure(int id, double radius) {
+        return time == 0 ? 0 : obstacleImpulse[id] / (time * 2 * Math.PI * radius);
+    }
+
+    /*
+        Fuerza media {fx, fy} que el gas ejerce sobre el obstáculo id en todo el run.
+     */
+    public double[] obstacleForce(int id) {
+        return time == 0 ? new double[]{ 0, 0 } : new double[]{ obstacleImpulseX[id] / time, obstacleImpulseY[id] / time };
+    }
+
+    public double getObstacleImpulse(int id) {
+        return obstacleImpulse[id];
+    }
+
+    public int getObstacles() {
+        return obstacles;
+    }
+
+    public static int[] walls() {
+        int[] channels = new int[STATIC];
+        for (int i = 0; i < STATIC; i++) {
+            channels[i] = i;
+        }
+        return channels;
+    }
+
+    public double getBinWidth() {
+        return binWidth;
+    }
+
+    public double getTime() {
+        return time;
+    }
+}
@@ -23,10 +23,6 @@ public class State {
         this.time = time;
         this.walls = walls;
         this.particleSet = particleSet;
-
-        collisionSet = new TreeSet<>();
-
-        updateCollisionsTimes();
     }
 
     private void updateCollisionsTimesWith(Set<Particle> particles) {
@@ -36,9 +32,14 @@ public class State {
     private void updateCollisionsTimes() {
         collisionSet.clear(); // Limpiamos la lista antes de actualizarla
         for (Particle current : particleSet) {
-            Pair<Double, Wall> wallCollision = timeUntilCollisionWithWall(current);
-            double timeUntilWallCollision = wallCollision.getLeft();
-            Wall collisionWall = wallCollision.getRight();
+            // Pared más cercana en forma cerrada: un tiempo por eje y el menor de los dos
+            double l = walls.get(WallType.RIGHT).getL();
+            double vx = current.getVelocity().getX();
+            double vy = current.getVelocity().getY();
+            double tx = Wall.axisTime(current.getPosition().getX(), vx, current.getRadius(), l);
+            double ty = Wall.axisTime(current.getPosition().getY(), vy, current.getRadius(), l);
+            double timeUntilWallCollision = Math.min(tx, ty);
+            Wall collisionWall = walls.get(Wall.nearest(tx, ty, vx, vy));
 
             Pair<Double, Particle> particleCollision = findNextParticleCollision(current);
 
@@ -68,32 +69,12 @@ public class State {
         return nextCollision;
     }
 
-    private Pair<Double, Wall> timeUntilCollisionWithWall(Particle p) {
-        double t1 = walls.get(WallType.BOTTOM).timeToCollide(p);
-        double t2 = walls.get(WallType.RIGHT).timeToCollide(p);
-        double t3 = walls.get(WallType.TOP).timeToCollide(p);
-        double t4 = walls.get(WallType.LEFT).timeToCollide(p);
-
-        // Mapear tiempos de colisión a las paredes correspondientes
-        Map<Wall, Double> timeToWallMap = new HashMap<>();
-        timeToWallMap.put(walls.get(WallType.BOTTOM), t1);
-        timeToWallMap.put(walls.get(WallType.RIGHT), t2);
-        timeToWallMap.put(walls.get(WallType.TOP), t3);
-        timeToWallMap.put(walls.get(WallType.LEFT), t4);
-
-        // Encontrar la pared con el menor tiempo de colisión
-        Map.Entry<Wall, Double> minEntry = timeToWallMap.entrySet()
-                .stream()
-                .min(Comparator.comparing(Map.Entry::getValue))
-                .get();  // Puedes manejar la excepción en caso de que el mapa esté vacío
-
-        Wall collidingWall = minEntry.getKey();
-        double minTime = minEntry.getValue();
-
-        return new Pair<>(minTime, collidingWall);  // Devolver <minTime, collidingWall>
-    }
-
+    /* Se calcula recién cuando se pide: los estados que devuelve el motor de eventos son solo para guardar. */
     public Set<FutureCollision> getCollisionSet() {
+        if (collisionSet == null) {
+            collisionSet = new TreeSet<>();
+            updateCollisionsTimes();
+        }
         return collisionSet;
     }
 
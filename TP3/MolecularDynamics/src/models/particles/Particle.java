@@ -1,7 +1,7 @@
 package models.particles;
 
 import models.Obstacle;
-import models.Pair;
+import models.CollisionKernel;
 
 import java.util.Objects;
 
@@ -13,6 +13,12 @@ public class Particle implements Obstacle {
     private double radius;
     private double mass;
 
+    // Cantidad de colisiones de la partícula, para invalidar eventos predichos antes de la última colisión.
+    private int collisionCount = 0;
+
+    // Tiempo al que corresponde position: el motor de eventos solo mueve a la partícula cuando la necesita.
+    private double lastUpdate = 0;
+
     public Particle(int id, Position position, Velocity velocity, double radius, double mass) {
         this.id = id;
         this.velocity = velocity;
@@ -42,43 +48,21 @@ public class Particle implements Obstacle {
         this.setPosition(new Position(newX, newY));
     }
 
+    /* Lleva la partícula al tiempo absoluto time (movimiento balístico desde lastUpdate). */
+    public void moveTo(double time) {
+        if (time != lastUpdate) {
+            move(time - lastUpdate);
+            lastUpdate = time;
+        }
+    }
+
     @Override
     public double timeToCollide(Particle particle) {
         /* Tiempo en colisionar la particula 'particle' con esta instancia. */
-
-        // Calculamos las diferencias de posición (deltaR) y velocidad (deltaV)
-        Pair<Double, Double> deltaR = new Pair<>(this.getPosition().getX() - particle.getPosition().getX(), this.getPosition().getY() - particle.getPosition().getY());
-        Pair<Double, Double> deltaV = new Pair<>(this.getVelocity().getX() - particle.getVelocity().getX(), this.getVelocity().getY() - particle.getVelocity().getY());
-
-        // Magnitudes al cuadrado
-        double deltaR2 = Math.pow(deltaR.getLeft(), 2) + Math.pow(deltaR.getRight(), 2); // deltaR^2
-        double deltaV2 = Math.pow(deltaV.getLeft(), 2) + Math.pow(deltaV.getRight(), 2); // deltaV^2
-        double deltaVDeltaR = deltaV.getLeft() * deltaR.getLeft() + deltaV.getRight() * deltaR.getRight(); // deltaV * deltaR
-
-        // La suma de los radios de ambas partículas
-        double phi = particle.getRadius() + this.getRadius();
-
-        // Calculamos el discriminante
-        double d = Math.pow(deltaVDeltaR, 2) - deltaV2 * (deltaR2 - (phi * phi));
-
-        // Si el discriminante es negativo, no hay colisión
-        if (d < 0) {
-            return Double.POSITIVE_INFINITY;
-        }
-
-        // Si deltaVDeltaR es negativo, significa que las partículas están acercándose
-        if (deltaVDeltaR < 0) {
-            // Calculamos el tiempo de colisión
-            double time = -(deltaVDeltaR + Math.sqrt(d)) / deltaV2;
-
-            // Si el tiempo es positivo, devolvemos ese valor, de lo contrario no colisionarán en el futuro
-            if (time > 0) {
-                return time;
-            }
-        }
-
-        // Si las partículas no colisionan en el futuro, devolvemos infinito
-        return Double.POSITIVE_INFINITY;
+        return CollisionKernel.time(
+                this.position.getX() - particle.position.getX(), this.position.getY() - particle.position.getY(),
+                this.velocity.getX() - particle.velocity.getX(), this.velocity.getY() - particle.velocity.getY(),
+                this.radius + particle.radius);
     }
 
     @Override
@@ -106,7 +90,10 @@ public class Particle implements Obstacle {
     public Particle clone() {
         Velocity newVelocity = new Velocity(this.getVelocity().getX(), this.getVelocity().getY());
         Position newPosition = new Position(this.getPosition().getX(), this.getPosition().getY());
-        return new Particle(getId(), position, velocity, getRadius(), getMass());
+        Particle clone = new Particle(getId(), newPosition, newVelocity, getRadius(), getMass());
+        clone.collisionCount = collisionCount;
+        clone.lastUpdate = lastUpdate;
+        return clone;
     }
 
     @Override
@@ -155,4 +142,21 @@ public class Particle implements Obstacle {
         this.mass = mass;
     }
 
+    public double getLastUpdate() {
+        return lastUpdate;
+    }
+
+    public void setLastUpdate(double lastUpdate) {
+        this.lastUpdate = lastUpdate;
+    }
+
+    @Override
+    public int getCollisionCount() {
+        return collisionCount;
+    }
+
+    public void incrementCollisionCount() {
+        collisionCount++;
+    }
+
 }
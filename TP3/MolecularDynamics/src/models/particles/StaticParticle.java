@@ -8,27 +8,32 @@ public class StaticParticle extends Particle {
 
     @Override
     public StaticParticle clone() {
-        return new StaticParticle(getId(), new Position(getPosition().getX(),getPosition().getY()), getRadius(), getMass());
+        StaticParticle clone = new StaticParticle(getId(), new Position(getPosition().getX(),getPosition().getY()), getRadius(), getMass());
+        clone.setLastUpdate(getLastUpdate());
+        return clone;
     }
 
-    public Double getMomentum(Particle particle) {
-        // Diferencia de posición entre la pared y la partícula
-        double deltaX = this.getPosition().getX() - particle.getPosition().getX();
-        double deltaY = this.getPosition().getY() - particle.getPosition().getY();
-
-        // Ángulo de la línea que conecta los centros de las partículas
-        double normalAngle = Math.atan2(deltaY, deltaX);
+    /* La partícula estática nunca cambia su velocidad, así que sus colisiones no invalidan otros eventos. */
+    @Override
+    public int getCollisionCount() {
+        return 0;
+    }
 
-        // Componentes de la velocidad tangencial
-        double vX = particle.getVelocity().getX();
-        double vY = particle.getVelocity().getY();
+    @Override
+    public void incrementCollisionCount() {
+    }
 
-        // Velocidades tangencial y normal
-        double velocityNormal = vX * Math.cos(normalAngle) + vY * Math.sin(normalAngle);
-        double velocityTangential = -vX * Math.sin(normalAngle) + vY * Math.cos(normalAngle);
+    /*
+        Impulso transferido por el choque de particle: 2 * m * |v_n|, con v_n la componente de la velocidad
+        sobre la línea que une los centros (la tangencial no cambia en un choque elástico).
+     */
+    public double getMomentum(Particle particle) {
+        double deltaX = this.getPosition().getX() - particle.getPosition().getX();
+        double deltaY = this.getPosition().getY() - particle.getPosition().getY();
+        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
 
-        // Incrementamos el momento usando la componente tangencial
-        return 2 * particle.getMass() * Math.abs(velocityTangential);
+        double velocityNormal = (particle.getVelocity().getX() * deltaX + particle.getVelocity().getY() * deltaY) / distance;
+        return 2 * particle.getMass() * Math.abs(velocityNormal);
     }
 
 }
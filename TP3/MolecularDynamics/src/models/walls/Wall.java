@@ -8,9 +8,47 @@ public abstract class Wall implements Obstacle {
     private final WallType type;
     private final double L;
 
+    // Eje sobre el que está la pared (x para izquierda/derecha) y si es la del extremo L (derecha/arriba)
+    private final boolean xAxis;
+    private final boolean upper;
+
     public Wall(WallType type, double l) {
         this.type = type;
         L = l;
+        this.xAxis = type == WallType.LEFT || type == WallType.RIGHT;
+        this.upper = type == WallType.RIGHT || type == WallType.TOP;
+    }
+
+    @Override
+    public double timeToCollide(Particle particle) {
+        double position = xAxis ? particle.getPosition().getX() : particle.getPosition().getY();
+        double velocity = xAxis ? particle.getVelocity().getX() : particle.getVelocity().getY();
+        // Solo choca con esta pared si se mueve hacia ella
+        if (upper ? velocity <= 0 : velocity >= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return axisTime(position, velocity, particle.getRadius(), L);
+    }
+
+    /*
+        Tiempo hasta la pared del eje hacia la que se mueve la partícula: con v > 0 la que está en l - r,
+        con v < 0 la que está en r. Una sola cuenta para las cuatro paredes. Si la partícula ya se pasó
+        (redondeo) devuelve 0 para que rebote enseguida en lugar de escaparse de la caja.
+     */
+    public static double axisTime(double position, double velocity, double radius, double l) {
+        double target = velocity > 0 ? l - radius : radius;
+        double t = (target - position) / velocity;
+        return velocity == 0 ? Double.POSITIVE_INFINITY : Math.max(0, t);
+    }
+
+    /*
+        Pared con la que choca primero una partícula que tarda tx en llegar a la pared de x y ty a la de y.
+     */
+    public static WallType nearest(double tx, double ty, double vx, double vy) {
+        if (tx <= ty) {
+            return vx > 0 ? WallType.RIGHT : WallType.LEFT;
+        }
+        return vy > 0 ? WallType.TOP : WallType.BOTTOM;
     }
 
     public WallType getType() {
@@ -17,6 +17,7 @@ import models.Field;
 import models.Particle;
 import models.Position;
 import models.Velocity;
+import utils.DiskPlacer;
 
 public class TryMaradoniano {
 
@@ -36,6 +37,11 @@ public class TryMaradoniano {
 	
 	private State initial;
 	
+	// Colocación del estado inicial; se informa en run() solo con verbose (SimulationRunner arma cientos de realizaciones)
+	private double packingFraction;
+	private double placementMillis;
+	private boolean verbose = false;
+	
 	public TryMaradoniano(int N, Field field, double blueVelocityMax, double redVelocityMax, double blueTau, double redTau, double minRadius, double maxRadius, double ap, double bp) {
 		this.N = N;
 		this.field = field;
@@ -149,28 +155,27 @@ public class TryMaradoniano {
 			    redTau
 			);
 		
-		while (particles.size() < N) {
-			// Posición x aleatoria dentro del área L x L
-            double x = maxRadius + random.nextDouble() * (field.getWidth() - 2 * maxRadius);
-            double y = maxRadius + random.nextDouble() * (field.getHeight() - 2 * maxRadius);
-            
-            Particle blue = new Particle(particles.size() + 1, new Position(x, y), player.getPosition(), new Velocity(new Vector<Double>(List.of(0.0, 0.0)), blueVelocityMax), blueVelocityMax, minRadius, maxRadius, maxRadius, blueTau);
-            
-            boolean match = false;
-            for (Particle particle : particles) {
-                match = blue.isInsidePersonalSpace(particle);
-                if (match)
-                    break;
-            }
-            if (!match)
-            	particles.add(blue);
+		// Superposición con grilla en lugar de contra todo el set (y sin pisar al jugador)
+		long start = System.nanoTime();
+		DiskPlacer placer = new DiskPlacer(field.getWidth(), field.getHeight(), random)
+				.addObstacle(player.getPosition().getX(), player.getPosition().getY(), maxRadius);
+		placer.place(N, maxRadius);
+		for (int i = 0; i < N; i++) {
+			Particle blue = new Particle(i + 1, new Position(placer.getX(i), placer.getY(i)), player.getPosition(), new Velocity(new Vector<Double>(List.of(0.0, 0.0)), blueVelocityMax), blueVelocityMax, minRadius, maxRadius, maxRadius, blueTau);
+			particles.add(blue);
 		}
+		packingFraction = placer.getPackingFraction();
+		placementMillis = (System.nanoTime() - start) / 1e6;
 		
 	
 		return new State(0.0, field, player, particles);
 	}
 	
 	public void run() {
+		if (verbose) {
+			System.out.printf(Locale.US, "Estado inicial: N = %d, fracción de empaquetamiento %.4f (%.1f ms)%n",
+					N, packingFraction, placementMillis);
+		}
         // Modificar el método run para usar el outputDirectory
         Path staticPath = getFilePath(outputDirectory, "static.txt");
         saveStatic(staticPath);
@@ -291,5 +296,17 @@ public class TryMaradoniano {
 	    public void setOutputDirectory(String directory) {
 	        this.outputDirectory = directory;
 	    }
+
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	public double getPackingFraction() {
+		return packingFraction;
+	}
+
+	public double getPlacementMillis() {
+		return placementMillis;
+	}
 	
 }